@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.maven.repository.tests;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tycho.p2.repository.FileBasedTychoRepositoryIndex;
+import org.eclipse.tycho.p2.repository.GAV;
+import org.eclipse.tycho.p2.repository.RepositoryLayoutHelper;
+import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileBasedTychoRepositoryIndexTest {
+
+    private static final GAV GAV_1 = new GAV("group", "artifact1", "1.0.0");
+
+    private static final GAV GAV_2 = new GAV("group", "artifact2", "1.0.0");
+
+    private final File basedir = new File("target/indexRepository").getAbsoluteFile();
+
+    private final File indexFile = new File(basedir, FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH);
+
+    private final File gav1ArtifactsFile = new File(basedir, RepositoryLayoutHelper.getRelativePath(GAV_1,
+            RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS, RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS));
+
+    @Before
+    public void cleanupIndex() {
+        indexFile.delete();
+        gav1ArtifactsFile.delete();
+    }
+
+    @Test
+    public void testSaveOnlyAppendsNewProjects() throws Exception {
+        TychoRepositoryIndex index = createIndex();
+        index.addProject(GAV_1);
+        index.save();
+        index.addProject(GAV_2);
+        index.addProject(GAV_1);
+        index.save();
+
+        Assert.assertEquals(2, readLines().size());
+        Assert.assertEquals(2, createIndex().getProjectGAVs().size());
+    }
+
+    @Test
+    public void testConcurrentAdditionsArePreserved() throws Exception {
+        TychoRepositoryIndex index1 = createIndex();
+        TychoRepositoryIndex index2 = createIndex();
+
+        index1.addProject(GAV_1);
+        index1.save();
+        index2.addProject(GAV_2);
+        index2.save();
+
+        Assert.assertEquals(2, createIndex().getProjectGAVs().size());
+    }
+
+    @Test
+    public void testRemovalRewritesIndex() throws Exception {
+        TychoRepositoryIndex index = createIndex();
+        index.addProject(GAV_1);
+        index.addProject(GAV_2);
+        index.save();
+
+        index = createIndex();
+        index.remove(GAV_1);
+        index.save();
+
+        Assert.assertEquals(1, readLines().size());
+        Assert.assertFalse(createIndex().getProjectGAVs().contains(GAV_1));
+        Assert.assertTrue(createIndex().getProjectGAVs().contains(GAV_2));
+    }
+
+    @Test
+    public void testRemovalKeepsProjectInstalledConcurrently() throws Exception {
+        TychoRepositoryIndex index = createIndex();
+        index.addProject(GAV_1);
+        index.addProject(GAV_2);
+        index.save();
+
+        index = createIndex();
+        index.remove(GAV_1);
+        // another process installs the project again before the removal is saved
+        gav1ArtifactsFile.getParentFile().mkdirs();
+        gav1ArtifactsFile.createNewFile();
+        index.save();
+
+        Assert.assertTrue(createIndex().getProjectGAVs().contains(GAV_1));
+        Assert.assertTrue(index.getProjectGAVs().contains(GAV_1));
+    }
+
+    @Test
+    public void testDuplicatesAreCompacted() throws Exception {
+        TychoRepositoryIndex initialIndex = createIndex();
+        for (int i = 0; i < 100; i++) {
+            initialIndex.addProject(new GAV("group", "artifact" + i, "1.0.0"));
+        }
+        initialIndex.save();
+
+        // simulate two processes which have appended the same projects
+        TychoRepositoryIndex index1 = createIndex();
+        TychoRepositoryIndex index2 = createIndex();
+        for (int i = 0; i < 100; i++) {
+            index1.addProject(new GAV("group", "duplicate" + i, "1.0.0"));
+            index2.addProject(new GAV("group", "duplicate" + i, "1.0.0"));
+        }
+        index1.save();
+        index2.save();
+        Assert.assertEquals(300, readLines().size());
+
+        TychoRepositoryIndex index = createIndex();
+        index.save();
+
+        Assert.assertEquals(200, readLines().size());
+        Assert.assertEquals(200, createIndex().getProjectGAVs().size());
+    }
+
+    @Test
+    public void testPartialLineIsSkippedAndCompacted() throws Exception {
+        TychoRepositoryIndex index = createIndex();
+        index.addProject(GAV_1);
+        index.save();
+        appendPartialLine();
+
+        index = createIndex();
+        Assert.assertEquals(1, index.getProjectGAVs().size());
+        index.save();
+
+        Assert.assertEquals(1, readLines().size());
+    }
+
+    @Test
+    public void testAppendAfterPartialLineKeepsFirstEntry() throws Exception {
+        TychoRepositoryIndex index = createIndex();
+        index.addProject(GAV_1);
+        index.save();
+        appendPartialLine();
+
+        index.addProject(GAV_2);
+        index.save();
+
+        Assert.assertTrue(createIndex().getProjectGAVs().contains(GAV_2));
+        Assert.assertEquals(2, createIndex().getProjectGAVs().size());
+    }
+
+    /** simulates a process which has been killed while appending to the index */
+    private void appendPartialLine() throws IOException {
+        FileWriter writer = new FileWriter(indexFile, true);
+        try {
+            writer.write("group:artif");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private TychoRepositoryIndex createIndex() {
+        return FileBasedTychoRepositoryIndex.createRepositoryIndex(basedir,
+                FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH);
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> result = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
@@ -12,17 +12,23 @@ package org.eclipse.tycho.p2.maven.repository.tests;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
+import org.eclipse.equinox.internal.provisional.p2.repository.IStateful;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
 import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.repository.artifact.ArtifactKeyQuery;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactDescriptor;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRequest;
@@ -169,6 +175,96 @@ public class LocalArtifactRepositoryTest {
         Assert.assertTrue(repo.contains(desc));
     }
 
+    @Test
+    public void artifactIsOnlyAddedWhenCompletelyWritten() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor desc = newBundleArtifactDescriptor(false);
+        File artifactFile = new File(basedir,
+                "p2/osgi/bundle/org.eclipse.tycho.test.p2/1.0.0/org.eclipse.tycho.test.p2-1.0.0.jar");
+
+        OutputStream os = repo.getOutputStream(desc);
+        os.write(new byte[] { 111 });
+
+        Assert.assertFalse(artifactFile.exists());
+        Assert.assertFalse(repo.contains(desc.getArtifactKey()));
+
+        os.close();
+
+        Assert.assertTrue(artifactFile.exists());
+        Assert.assertTrue(repo.contains(desc));
+    }
+
+    @Test
+    public void failedArtifactIsNotAdded() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor desc = newBundleArtifactDescriptor(false);
+        File artifactDir = new File(basedir, "p2/osgi/bundle/org.eclipse.tycho.test.p2/1.0.0");
+
+        OutputStream os = repo.getOutputStream(desc);
+        os.write(new byte[] { 111 });
+        ((IStateful) os).setStatus(new Status(IStatus.ERROR, Activator.ID, "Download failed"));
+        os.close();
+
+        Assert.assertFalse(repo.contains(desc.getArtifactKey()));
+        Assert.assertEquals(0, artifactDir.listFiles().length);
+    }
+
+    @Test
+    public void artifactWithMatchingChecksumIsAdded() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor desc = newBundleArtifactDescriptor(false);
+        // MD5 of the single byte 111 ('o')
+        desc.setProperty(IArtifactDescriptor.DOWNLOAD_MD5, "d95679752134a2d9eb61dbd7b91c4bcc");
+
+        writeDummyArtifact(repo, desc);
+
+        Assert.assertTrue(repo.contains(desc));
+    }
+
+    @Test
+    public void artifactWithWrongChecksumIsNotAdded() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor desc = newBundleArtifactDescriptor(false);
+        desc.setProperty(IArtifactDescriptor.DOWNLOAD_MD5, "00000000000000000000000000000000");
+        File artifactDir = new File(basedir, "p2/osgi/bundle/org.eclipse.tycho.test.p2/1.0.0");
+
+        OutputStream os = repo.getOutputStream(desc);
+        os.write(new byte[] { 111 });
+        try {
+            os.close();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        Assert.assertEquals(IStatus.ERROR, ((IStateful) os).getStatus().getSeverity());
+        Assert.assertFalse(repo.contains(desc.getArtifactKey()));
+        Assert.assertEquals(0, artifactDir.listFiles().length);
+    }
+
+    @Test
+    public void existingArtifactFileIsReplaced() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor desc = newBundleArtifactDescriptor(false);
+        File artifactFile = new File(basedir,
+                "p2/osgi/bundle/org.eclipse.tycho.test.p2/1.0.0/org.eclipse.tycho.test.p2-1.0.0.jar");
+        artifactFile.getParentFile().mkdirs();
+        FileOutputStream leftover = new FileOutputStream(artifactFile);
+        leftover.write(new byte[] { 0 });
+        leftover.close();
+
+        writeDummyArtifact(repo, desc);
+
+        FileInputStream is = new FileInputStream(artifactFile);
+        try {
+            Assert.assertEquals(111, is.read());
+            Assert.assertEquals(-1, is.read());
+        } finally {
+            is.close();
+        }
+        Assert.assertTrue(repo.contains(desc));
+    }
+
     private void writeDummyArtifact(LocalArtifactRepository repo, ArtifactDescriptor desc) throws ProvisionException,
             IOException {
         writeDummyArtifact(repo, desc, new byte[] { 111 });
@@ -211,6 +307,43 @@ public class LocalArtifactRepositoryTest {
         Assert.assertTrue(repo.contains(p2Artifact.getArtifactKey()));
     }
 
+    @Test
+    public void reloadWithArtifactsLoadedOnDemand() throws Exception {
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        ArtifactDescriptor p2Artifact = newBundleArtifactDescriptor(false);
+        writeDummyArtifact(repo, p2Artifact);
+        repo.save();
+
+        repo = new LocalArtifactRepository(basedir);
+        Set<IArtifactKey> keys = repo.query(ArtifactKeyQuery.ALL_KEYS, new NullProgressMonitor()).toSet();
+        Assert.assertEquals(Collections.singleton(p2Artifact.getArtifactKey()), keys);
+
+        IArtifactDescriptor[] descriptors = repo.getArtifactDescriptors(p2Artifact.getArtifactKey());
+        Assert.assertEquals(1, descriptors.length);
+        Assert.assertEquals(p2Artifact.getArtifactKey(), descriptors[0].getArtifactKey());
+    }
+
+    @Test
+    public void concurrentlySavedDescriptorsAreMerged() throws Exception {
+        LocalArtifactRepository repo1 = new LocalArtifactRepository(basedir);
+        LocalArtifactRepository repo2 = new LocalArtifactRepository(basedir);
+
+        ArtifactDescriptor canonical = newBundleArtifactDescriptor(false);
+        writeDummyArtifact(repo1, canonical);
+        repo1.save();
+
+        ArtifactDescriptor packed = newBundleArtifactDescriptor(false);
+        packed.setProcessingSteps(new ProcessingStepDescriptor[] { new ProcessingStepDescriptor(
+                "org.eclipse.equinox.p2.processing.Pack200Unpacker", null, true) });
+        packed.setProperty(IArtifactDescriptor.FORMAT, "packed");
+        repo2.getArtifactFile(packed).createNewFile();
+        repo2.addDescriptor(packed);
+        repo2.save();
+
+        LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
+        Assert.assertEquals(2, repo.getArtifactDescriptors(canonical.getArtifactKey()).length);
+    }
+
     @Test
     public void testGetArtifactsNoRequests() {
         LocalArtifactRepository repo = new LocalArtifactRepository(basedir);
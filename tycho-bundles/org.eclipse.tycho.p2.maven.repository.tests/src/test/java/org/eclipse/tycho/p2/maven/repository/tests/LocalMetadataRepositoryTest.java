@@ -132,6 +132,34 @@ public class LocalMetadataRepositoryTest {
 
     }
 
+    @Test
+    public void concurrentlyAddedUnitsAreMerged() throws CoreException {
+        File location = new File("target/concurrentMetadataRepo");
+        deleteDir(location);
+        createRepository(location, "group", "artifact", "version");
+
+        LocalMetadataRepository repository1 = (LocalMetadataRepository) loadRepository(location);
+        LocalMetadataRepository repository2 = (LocalMetadataRepository) loadRepository(location);
+        IInstallableUnit iu1 = createUnit("test1");
+        IInstallableUnit iu2 = createUnit("test2");
+        repository1.addInstallableUnits(Arrays.asList(iu1));
+        repository2.addInstallableUnits(Arrays.asList(iu2));
+
+        LocalMetadataRepository repository = (LocalMetadataRepository) loadRepository(location);
+        Set<IInstallableUnit> ius = repository.getGAVs().get(RepositoryLayoutHelper.getGAV(iu1.getProperties()));
+        Assert.assertEquals(2, ius.size());
+    }
+
+    private static IInstallableUnit createUnit(String id) {
+        InstallableUnitDescription iud = new MetadataFactory.InstallableUnitDescription();
+        iud.setId(id);
+        iud.setVersion(Version.parseVersion("1.0.0"));
+        iud.setProperty(RepositoryLayoutHelper.PROP_GROUP_ID, "group");
+        iud.setProperty(RepositoryLayoutHelper.PROP_ARTIFACT_ID, "artifact");
+        iud.setProperty(RepositoryLayoutHelper.PROP_VERSION, "version");
+        return MetadataFactory.createInstallableUnit(iud);
+    }
+
     private void deleteDir(File dir) {
         File[] files = dir.listFiles();
         if (files != null) {
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.maven.repository.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.tycho.p2.maven.repository.xmlio.MetadataIO;
+import org.junit.Test;
+
+public class MetadataIOTest {
+
+    private final File moduleMetadataFile = new File("resources/repositories/module/target/p2content.xml");
+
+    @Test
+    public void testRepeatedReadReturnsSameUnits() throws Exception {
+        Set<IInstallableUnit> firstRead = new MetadataIO().readXML(moduleMetadataFile);
+        Set<IInstallableUnit> secondRead = new MetadataIO().readXML(moduleMetadataFile);
+
+        assertEquals(2, firstRead.size());
+        assertEquals(firstRead, secondRead);
+        assertSame(firstRead.iterator().next(), secondRead.iterator().next());
+    }
+
+    @Test
+    public void testReadAfterWriteReturnsNewContent() throws Exception {
+        File file = new File("target/metadataIO/p2content.xml");
+        file.getParentFile().mkdirs();
+
+        Set<IInstallableUnit> units = new MetadataIO().readXML(moduleMetadataFile);
+        new MetadataIO().writeXML(units, file);
+        assertEquals(2, new MetadataIO().readXML(file).size());
+
+        Set<IInstallableUnit> oneUnit = new LinkedHashSet<IInstallableUnit>();
+        oneUnit.add(units.iterator().next());
+        new MetadataIO().writeXML(oneUnit, file);
+        assertEquals(1, new MetadataIO().readXML(file).size());
+    }
+}
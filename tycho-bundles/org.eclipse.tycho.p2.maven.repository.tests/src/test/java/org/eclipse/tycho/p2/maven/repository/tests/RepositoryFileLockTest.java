@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.maven.repository.tests;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepositoryFileLockTest {
+
+    private final File basedir = new File("target/lockRepository").getAbsoluteFile();
+
+    private final File file = new File(basedir, "file.xml");
+
+    private final File lockFile = new File(basedir, "file.xml.lock");
+
+    @Before
+    public void cleanup() {
+        file.delete();
+        lockFile.delete();
+    }
+
+    @Test
+    public void testLockFileIsRemovedOnRelease() throws Exception {
+        RepositoryFileLock lock = RepositoryFileLock.lock(file);
+        Assert.assertTrue(lockFile.exists());
+        lock.release();
+
+        Assert.assertFalse(lockFile.exists());
+    }
+
+    @Test
+    public void testLockExcludesOtherThreads() throws Exception {
+        final AtomicBoolean acquired = new AtomicBoolean();
+        RepositoryFileLock lock = RepositoryFileLock.lock(file);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    RepositoryFileLock.lock(file).release();
+                    acquired.set(true);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        try {
+            thread.start();
+            thread.join(200);
+            Assert.assertFalse(acquired.get());
+        } finally {
+            lock.release();
+        }
+        thread.join();
+
+        Assert.assertTrue(acquired.get());
+    }
+
+    @Test
+    public void testReplaceExistingFile() throws Exception {
+        write(file, "old");
+        File tempFile = new File(basedir, "file.xml.tmp");
+        write(tempFile, "new content");
+
+        RepositoryFileLock.replace(tempFile, file);
+
+        Assert.assertFalse(tempFile.exists());
+        Assert.assertEquals("new content".length(), file.length());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -17,8 +17,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,8 +30,11 @@ import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.equinox.internal.p2.core.helpers.FileUtils;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
+import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.query.IQuery;
 import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.IQueryable;
@@ -40,6 +45,7 @@ import org.eclipse.equinox.p2.repository.artifact.spi.AbstractArtifactRepository
 import org.eclipse.equinox.p2.repository.artifact.spi.ArtifactDescriptor;
 import org.eclipse.tycho.p2.maven.repository.xmlio.ArtifactsIO;
 import org.eclipse.tycho.p2.repository.GAV;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
 import org.eclipse.tycho.p2.repository.RepositoryLayoutHelper;
 import org.eclipse.tycho.p2.repository.RepositoryReader;
 import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
@@ -53,6 +59,12 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
 
     private static final IArtifactDescriptor[] ARTIFACT_DESCRIPTOR_ARRAY = new IArtifactDescriptor[0];
 
+    /** group id prefix of artifacts mirrored from p2 repositories, see RepositoryLayoutHelper.getP2Gav */
+    private static final String P2_GROUP_ID_PREFIX = "p2.";
+
+    private static final Set<String> P2_CLASSIFIERS = new HashSet<String>(Arrays.asList("osgi.bundle",
+            "org.eclipse.update.feature", "binary"));
+
     // TODO where do we need multiple descriptors per artifact key? do we support storing pack200 compressed files in the local Maven repo?
     protected Map<IArtifactKey, Set<IArtifactDescriptor>> descriptorsMap = new HashMap<IArtifactKey, Set<IArtifactDescriptor>>();
 
@@ -60,6 +72,12 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
 
     private final RepositoryReader contentLocator;
 
+    /**
+     * GAVs of artifacts mirrored from p2 repositories which have not been parsed yet. The artifact
+     * key is encoded in these GAVs, so the artifacts files are only read when a key is accessed.
+     */
+    private final Set<GAV> unloadedGAVs = new LinkedHashSet<GAV>();
+
     @Deprecated
     protected AbstractMavenArtifactRepository(URI uri, TychoRepositoryIndex projectIndex,
             RepositoryReader contentLocator) {
@@ -80,40 +98,118 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     }
 
     protected void loadMaven(TychoRepositoryIndex projectIndex) {
-        final ArtifactsIO io = new ArtifactsIO();
-
+        boolean indexChanged = false;
         for (final GAV gav : projectIndex.getProjectGAVs()) {
             try {
                 File localArtifactFileLocation = contentLocator.getLocalArtifactLocation(gav,
                         RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS, RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS);
-                if (!localArtifactFileLocation.exists()) {
+                if (isMissing(localArtifactFileLocation)) {
                     // if files have been manually removed from the repository, simply adjust the meta info file (bug 351080)
                     projectIndex.remove(gav);
-                    projectIndex.save();
+                    indexChanged = true;
+                } else if (isP2GAV(gav)) {
+                    // the artifact key is encoded in the GAV, so the file is only parsed on demand
+                    unloadedGAVs.add(gav);
                 } else {
-                    final InputStream is = contentLocator.getContents(gav,
-                            RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS,
-                            RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS);
-                    try {
-                        final Set<IArtifactDescriptor> gavDescriptors = io.readXML(is);
-                        for (IArtifactDescriptor descriptor : gavDescriptors) {
-                            internalAddDescriptor(descriptor);
-                        }
-                    } finally {
-                        is.close();
-                    }
+                    loadGAV(gav);
                 }
             } catch (IOException e) {
                 // TODO throw properly typed exception if repository cannot be loaded
                 e.printStackTrace();
             }
         }
+
+        if (indexChanged) {
+            try {
+                projectIndex.save();
+            } catch (IOException e) {
+                // the index is cleaned up again the next time the repository is loaded
+                LogHelper.log(new Status(IStatus.WARNING, Activator.ID, "Could not save local repository index", e));
+            }
+        }
+    }
+
+    private static boolean isP2GAV(GAV gav) {
+        String groupId = gav.getGroupId();
+        return groupId.startsWith(P2_GROUP_ID_PREFIX)
+                && P2_CLASSIFIERS.contains(groupId.substring(P2_GROUP_ID_PREFIX.length()));
+    }
+
+    /**
+     * Checks if the file is missing, waiting for other processes which are writing it.
+     */
+    static boolean isMissing(File file) throws IOException {
+        if (file.exists()) {
+            return false;
+        }
+        RepositoryFileLock lock = RepositoryFileLock.lock(file);
+        try {
+            return !file.exists();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void loadGAV(GAV gav) throws IOException {
+        final InputStream is = contentLocator.getContents(gav, RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS,
+                RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS);
+        try {
+            final Set<IArtifactDescriptor> gavDescriptors = new ArtifactsIO().readXML(is);
+            for (IArtifactDescriptor descriptor : gavDescriptors) {
+                internalAddDescriptor(descriptor);
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private void loadUnloadedGAV(GAV gav) {
+        try {
+            loadGAV(gav);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read p2 artifact descriptors of " + gav, e);
+        }
+    }
+
+    /**
+     * Makes sure that the descriptors of the given artifact key have been read.
+     */
+    protected synchronized void ensureLoaded(IArtifactKey key) {
+        if (unloadedGAVs.isEmpty()) {
+            return;
+        }
+        GAV gav = getP2GAV(key);
+        if (unloadedGAVs.remove(gav)) {
+            loadUnloadedGAV(gav);
+        }
+    }
+
+    /**
+     * Makes sure that all descriptors of this repository have been read.
+     */
+    protected synchronized void ensureAllLoaded() {
+        for (GAV gav : unloadedGAVs) {
+            loadUnloadedGAV(gav);
+        }
+        unloadedGAVs.clear();
+    }
+
+    @SuppressWarnings("restriction")
+    private synchronized Set<IArtifactKey> getAllKeys() {
+        Set<IArtifactKey> keys = new HashSet<IArtifactKey>(descriptorsMap.keySet());
+        for (GAV gav : unloadedGAVs) {
+            // the summary of an unloaded GAV is the artifact key it is named after
+            String classifier = gav.getGroupId().substring(P2_GROUP_ID_PREFIX.length());
+            keys.add(new ArtifactKey(classifier, gav.getArtifactId(), Version.parseVersion(gav.getVersion())));
+        }
+        return keys;
     }
 
     @Override
     public boolean contains(IArtifactDescriptor descriptor) {
         if (descriptor == null)
             throw new NullPointerException();
+        ensureLoaded(descriptor.getArtifactKey());
         return descriptors.contains(descriptor);
     }
 
@@ -121,11 +217,13 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     public boolean contains(IArtifactKey key) {
         if (key == null)
             throw new NullPointerException();
+        ensureLoaded(key);
         return descriptorsMap.containsKey(key);
     }
 
     @Override
     public IArtifactDescriptor[] getArtifactDescriptors(IArtifactKey key) {
+        ensureLoaded(key);
         Set<IArtifactDescriptor> descriptors = descriptorsMap.get(key);
         if (descriptors == null) {
             return ARTIFACT_DESCRIPTOR_ARRAY;
@@ -134,7 +232,10 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     }
 
     protected GAV getP2GAV(IArtifactDescriptor descriptor) {
-        IArtifactKey key = descriptor.getArtifactKey();
+        return getP2GAV(descriptor.getArtifactKey());
+    }
+
+    private static GAV getP2GAV(IArtifactKey key) {
         StringBuffer version = new StringBuffer();
         key.getVersion().toString(version);
         return RepositoryLayoutHelper.getP2Gav(key.getClassifier(), key.getId(), version.toString());
@@ -151,6 +252,7 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     @Override
     public void addDescriptor(IArtifactDescriptor descriptor) {
         super.addDescriptor(descriptor);
+        ensureLoaded(descriptor.getArtifactKey());
         internalAddDescriptor(descriptor);
     }
 
@@ -189,12 +291,13 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     }
 
     public IQueryResult<IArtifactKey> query(IQuery<IArtifactKey> query, IProgressMonitor monitor) {
-        return query.perform(descriptorsMap.keySet().iterator());
+        return query.perform(getAllKeys().iterator());
     }
 
     public IQueryable<IArtifactDescriptor> descriptorQueryable() {
         return new IQueryable<IArtifactDescriptor>() {
             public IQueryResult<IArtifactDescriptor> query(IQuery<IArtifactDescriptor> query, IProgressMonitor monitor) {
+                ensureAllLoaded();
                 return query.perform(descriptors.iterator());
             }
         };
@@ -251,6 +354,7 @@ public abstract class AbstractMavenArtifactRepository extends AbstractArtifactRe
     }
 
     public File getArtifactFile(IArtifactKey key) {
+        ensureLoaded(key);
         Set<IArtifactDescriptor> descriptors = descriptorsMap.get(key);
         if (descriptors.isEmpty())
             return null;
@@ -12,7 +12,6 @@ package org.eclipse.tycho.p2.maven.repository;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,6 +21,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.query.IQuery;
@@ -47,6 +49,8 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
 
     protected Map<GAV, Set<IInstallableUnit>> unitsMap = new LinkedHashMap<GAV, Set<IInstallableUnit>>();
 
+    private boolean loaded;
+
     public AbstractMavenMetadataRepository(URI location, TychoRepositoryIndex projectIndex,
             RepositoryReader contentLocator) {
         this(Activator.getProvisioningAgent(), location, projectIndex, contentLocator);
@@ -62,7 +66,17 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
         this.projectIndex = projectIndex;
         this.contentLocator = contentLocator;
 
-        if (projectIndex != null && contentLocator != null) {
+        // the content is only read when it is needed, see ensureLoaded()
+        this.loaded = projectIndex == null || contentLocator == null;
+    }
+
+    /**
+     * Makes sure that the metadata of all indexed projects has been read. Subclasses need to call
+     * this method before accessing {@link #units} or {@link #unitsMap}.
+     */
+    protected synchronized void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
             load();
         }
     }
@@ -70,25 +84,20 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
     protected void load() {
         MetadataIO io = new MetadataIO();
 
+        boolean indexChanged = false;
         for (GAV gav : projectIndex.getProjectGAVs()) {
             try {
                 File localArtifactFileLocation = contentLocator.getLocalArtifactLocation(gav,
                         RepositoryLayoutHelper.CLASSIFIER_P2_METADATA, RepositoryLayoutHelper.EXTENSION_P2_METADATA);
-                if (!localArtifactFileLocation.exists()) {
+                if (AbstractMavenArtifactRepository.isMissing(localArtifactFileLocation)) {
                     // if files have been manually removed from the repository, simply adjust the meta info file (bug 351080)
                     projectIndex.remove(gav);
-                    projectIndex.save();
+                    indexChanged = true;
                 } else {
-                    InputStream is = contentLocator.getContents(gav, RepositoryLayoutHelper.CLASSIFIER_P2_METADATA,
-                            RepositoryLayoutHelper.EXTENSION_P2_METADATA);
-                    try {
-                        Set<IInstallableUnit> gavUnits = io.readXML(is);
-
-                        unitsMap.put(gav, gavUnits);
-                        units.addAll(gavUnits);
-                    } finally {
-                        is.close();
-                    }
+                    Set<IInstallableUnit> gavUnits = io.readXML(localArtifactFileLocation);
+
+                    unitsMap.put(gav, gavUnits);
+                    units.addAll(gavUnits);
                 }
             } catch (IOException e) {
                 // TODO throw properly typed exception if repository cannot be loaded
@@ -96,6 +105,15 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
             }
 
         }
+
+        if (indexChanged) {
+            try {
+                projectIndex.save();
+            } catch (IOException e) {
+                // the index is cleaned up again the next time the repository is loaded
+                LogHelper.log(new Status(IStatus.WARNING, Activator.ID, "Could not save local repository index", e));
+            }
+        }
     }
 
     @Override
@@ -103,6 +121,7 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
     }
 
     public IQueryResult<IInstallableUnit> query(IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+        ensureLoaded();
         return query.perform(units.iterator());
     }
 
@@ -110,6 +129,7 @@ public abstract class AbstractMavenMetadataRepository extends AbstractMetadataRe
      * For testing purposes only
      */
     public Map<GAV, Set<IInstallableUnit>> getGAVs() {
+        ensureLoaded();
         return unitsMap;
     }
 
@@ -12,49 +12,78 @@ package org.eclipse.tycho.p2.maven.repository;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.internal.provisional.p2.repository.IStateful;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactDescriptor;
 import org.eclipse.equinox.p2.repository.artifact.spi.ArtifactDescriptor;
 import org.eclipse.tycho.p2.maven.repository.xmlio.ArtifactsIO;
+import org.eclipse.tycho.p2.repository.FileBasedTychoRepositoryIndex;
 import org.eclipse.tycho.p2.repository.GAV;
 import org.eclipse.tycho.p2.repository.LocalRepositoryReader;
-import org.eclipse.tycho.p2.repository.FileBasedTychoRepositoryIndex;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
 import org.eclipse.tycho.p2.repository.RepositoryLayoutHelper;
 import org.eclipse.tycho.p2.repository.RepositoryReader;
 import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
 
 public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
 
+    /** MD5 checksum of the artifact in its canonical form */
+    static final String PROP_ARTIFACT_MD5 = "artifact.md5";
+
+    static final String PROP_ARTIFACT_SHA256 = "artifact.checksum.sha-256";
+
+    static final String PROP_DOWNLOAD_SHA256 = "download.checksum.sha-256";
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /** age after which temporary files of interrupted downloads are deleted */
+    private static final long STALE_TEMP_FILE_AGE = 24L * 60 * 60 * 1000;
+
     private final Set<IArtifactKey> changedDescriptors = new HashSet<IArtifactKey>();
 
+    /** index of the GAVs in this repository; only changes are written on save */
+    private final TychoRepositoryIndex index;
+
     public LocalArtifactRepository(File location) {
         this(Activator.getProvisioningAgent(), location);
     }
 
     public LocalArtifactRepository(IProvisioningAgent agent, File location) {
-        super(agent, location.toURI(), FileBasedTychoRepositoryIndex.createRepositoryIndex(location,
+        this(agent, location, FileBasedTychoRepositoryIndex.createRepositoryIndex(location,
                 FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH), new LocalRepositoryReader(location));
     }
 
     public LocalArtifactRepository(File location, TychoRepositoryIndex projectIndex, RepositoryReader contentLocator) {
-        super(Activator.getProvisioningAgent(), location.toURI(), projectIndex, contentLocator);
+        this(Activator.getProvisioningAgent(), location, projectIndex, contentLocator);
+    }
+
+    private LocalArtifactRepository(IProvisioningAgent agent, File location, TychoRepositoryIndex projectIndex,
+            RepositoryReader contentLocator) {
+        super(agent, location.toURI(), projectIndex, contentLocator);
+        this.index = projectIndex;
     }
 
     private void saveMaven() {
         File location = getBasedir();
 
-        TychoRepositoryIndex index = FileBasedTychoRepositoryIndex.createRepositoryIndex(location,
-                FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH);
-
         ArtifactsIO io = new ArtifactsIO();
 
         for (IArtifactKey key : changedDescriptors) {
@@ -75,12 +104,7 @@ public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
                 file.getParentFile().mkdirs();
 
                 try {
-                    OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
-                    try {
-                        io.writeXML(keyDescriptors, os);
-                    } finally {
-                        os.close();
-                    }
+                    writeMerged(io, keyDescriptors, file);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -96,13 +120,46 @@ public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
         changedDescriptors.clear();
     }
 
+    /**
+     * Writes the descriptors of one GAV. Descriptors which have been added to the file by other
+     * processes since it was read are preserved, as long as their artifact files exist.
+     */
+    private void writeMerged(ArtifactsIO io, Set<IArtifactDescriptor> keyDescriptors, File file) throws IOException {
+        RepositoryFileLock lock = RepositoryFileLock.lock(file);
+        try {
+            if (file.exists()) {
+                InputStream is = new FileInputStream(file);
+                try {
+                    for (IArtifactDescriptor descriptor : io.readXML(is)) {
+                        if (!keyDescriptors.contains(descriptor) && getArtifactFile(descriptor).canRead()) {
+                            internalAddDescriptor(descriptor);
+                        }
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+
+            File tempFile = new File(file.getPath() + ".tmp");
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile));
+            try {
+                io.writeXML(keyDescriptors, os);
+            } finally {
+                os.close();
+            }
+            RepositoryFileLock.replace(tempFile, file);
+        } finally {
+            lock.release();
+        }
+    }
+
     private String getMetadataRelpath(GAV gav) {
         String relpath = RepositoryLayoutHelper.getRelativePath(gav, RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS,
                 RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS);
         return relpath;
     }
 
-    public void save() {
+    public synchronized void save() {
         saveMaven();
     }
 
@@ -118,29 +175,191 @@ public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
         File file = new File(basedir, RepositoryLayoutHelper.getRelativePath(gav, null, null));
         file.getParentFile().mkdirs();
 
-        // TODO ideally, repository index should be updated after artifact has been written to the file
-
         ArtifactDescriptor newDescriptor = new ArtifactDescriptor(descriptor);
         newDescriptor.setRepository(this);
-        descriptors.add(newDescriptor);
 
-        IArtifactKey key = newDescriptor.getArtifactKey();
+        deleteStaleTempFiles(file);
+
+        File tempFile = null;
+        try {
+            // the artifact is written to a temporary file, so that readers never see partially written files
+            tempFile = File.createTempFile(file.getName(), TEMP_FILE_SUFFIX, file.getParentFile());
+            return new ArtifactOutputStream(newDescriptor, tempFile, file, getExpectedChecksums(newDescriptor));
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, "Could not create artifact file", e));
+        }
+    }
+
+    /**
+     * Deletes temporary files of the given artifact file which have been left behind by builds that
+     * were killed while downloading. Recent files may still be written by other processes.
+     */
+    private static void deleteStaleTempFiles(final File file) {
+        File[] tempFiles = file.getParentFile().listFiles(new FileFilter() {
+            public boolean accept(File candidate) {
+                String name = candidate.getName();
+                return name.startsWith(file.getName()) && name.endsWith(TEMP_FILE_SUFFIX) && candidate.isFile();
+            }
+        });
+        if (tempFiles == null) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_FILE_AGE;
+        for (File tempFile : tempFiles) {
+            if (tempFile.lastModified() < staleBefore) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the checksums of the descriptor which apply to the bytes written for it, keyed by
+     * digest algorithm. The download checksums describe the bytes as stored in the source
+     * repository, which are the bytes written here because p2 drops them from descriptors of
+     * processed artifacts. The artifact checksums describe the canonical form and are hence only
+     * verified if the descriptor has no format.
+     */
+    static Map<String, String> getExpectedChecksums(IArtifactDescriptor descriptor) {
+        Map<String, String> checksums = new LinkedHashMap<String, String>();
+        putChecksum(checksums, "MD5", descriptor.getProperty(IArtifactDescriptor.DOWNLOAD_MD5));
+        putChecksum(checksums, "SHA-256", descriptor.getProperty(PROP_DOWNLOAD_SHA256));
+        if (descriptor.getProperty(IArtifactDescriptor.FORMAT) == null
+                && descriptor.getProcessingSteps().length == 0) {
+            putChecksum(checksums, "MD5", descriptor.getProperty(PROP_ARTIFACT_MD5));
+            putChecksum(checksums, "SHA-256", descriptor.getProperty(PROP_ARTIFACT_SHA256));
+        }
+        return checksums;
+    }
+
+    private static void putChecksum(Map<String, String> checksums, String algorithm, String value) {
+        if (value != null && value.trim().length() > 0 && !checksums.containsKey(algorithm)) {
+            checksums.put(algorithm, value.trim().toLowerCase());
+        }
+    }
+
+    /**
+     * Moves the fully written and verified artifact file to its final location and only then adds
+     * the descriptor to the repository. An existing file, e.g. one left by an interrupted build, is
+     * replaced because its content has not been verified.
+     */
+    synchronized void commitArtifact(IArtifactDescriptor descriptor, File tempFile, File file) throws IOException {
+        RepositoryFileLock.replace(tempFile, file);
+
+        IArtifactKey key = descriptor.getArtifactKey();
+        ensureLoaded(key);
+
+        descriptors.add(descriptor);
         Set<IArtifactDescriptor> keyDescriptors = descriptorsMap.get(key);
         if (keyDescriptors == null) {
             keyDescriptors = new HashSet<IArtifactDescriptor>();
             descriptorsMap.put(key, keyDescriptors);
         }
-        keyDescriptors.add(newDescriptor);
+        keyDescriptors.add(descriptor);
 
         changedDescriptors.add(key);
+    }
 
-        try {
-            return new FileOutputStream(file);
-        } catch (FileNotFoundException e) {
-            throw new ProvisionException("Could not create artifact file", e);
+    @SuppressWarnings("restriction")
+    private class ArtifactOutputStream extends FilterOutputStream implements IStateful {
+
+        private final IArtifactDescriptor descriptor;
+        private final File tempFile;
+        private final File file;
+
+        /** expected checksum by digest */
+        private final Map<MessageDigest, String> checksums = new LinkedHashMap<MessageDigest, String>();
+
+        private IStatus status = Status.OK_STATUS;
+        private boolean closed;
+
+        ArtifactOutputStream(IArtifactDescriptor descriptor, File tempFile, File file, Map<String, String> checksums)
+                throws IOException {
+            super(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            this.descriptor = descriptor;
+            this.tempFile = tempFile;
+            this.file = file;
+            for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+                try {
+                    this.checksums.put(MessageDigest.getInstance(checksum.getKey()), checksum.getValue());
+                } catch (NoSuchAlgorithmException e) {
+                    // the checksum can't be verified on this JRE
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            for (MessageDigest digest : checksums.keySet()) {
+                digest.update((byte) b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            for (MessageDigest digest : checksums.keySet()) {
+                digest.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } catch (IOException e) {
+                tempFile.delete();
+                throw e;
+            }
+            if (status == null || status.getSeverity() == IStatus.ERROR || status.getSeverity() == IStatus.CANCEL) {
+                tempFile.delete();
+                return;
+            }
+            String error = verifyChecksums();
+            if (error != null) {
+                tempFile.delete();
+                status = new Status(IStatus.ERROR, Activator.ID, error);
+                throw new IOException(error);
+            }
+            commitArtifact(descriptor, tempFile, file);
+        }
+
+        private String verifyChecksums() {
+            for (Map.Entry<MessageDigest, String> checksum : checksums.entrySet()) {
+                String actual = toHex(checksum.getKey().digest());
+                if (!actual.equals(checksum.getValue())) {
+                    return checksum.getKey().getAlgorithm() + " checksum mismatch for " + descriptor.getArtifactKey()
+                            + ": expected " + checksum.getValue() + " but was " + actual;
+                }
+            }
+            return null;
+        }
+
+        public IStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(IStatus status) {
+            this.status = status;
         }
     }
 
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
     private File getBasedir() {
         return new File(getLocation());
     }
@@ -151,23 +370,34 @@ public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
     }
 
     @Override
-    public boolean contains(IArtifactDescriptor descriptor) {
+    public synchronized boolean contains(IArtifactDescriptor descriptor) {
         // TODO there should not be a descriptor if the file doesn't exist!
         return super.contains(descriptor) && getArtifactFile(descriptor).canRead();
     }
 
     @Override
-    public void addDescriptor(IArtifactDescriptor descriptor) {
+    public synchronized boolean contains(IArtifactKey key) {
+        return super.contains(key);
+    }
+
+    @Override
+    public synchronized IArtifactDescriptor[] getArtifactDescriptors(IArtifactKey key) {
+        return super.getArtifactDescriptors(key);
+    }
+
+    @Override
+    public synchronized void addDescriptor(IArtifactDescriptor descriptor) {
         super.addDescriptor(descriptor);
 
         changedDescriptors.add(descriptor.getArtifactKey());
     }
 
     @Override
-    public void removeDescriptor(IArtifactDescriptor descriptor) {
+    public synchronized void removeDescriptor(IArtifactDescriptor descriptor) {
         super.removeDescriptor(descriptor);
 
         IArtifactKey key = descriptor.getArtifactKey();
+        ensureLoaded(key);
 
         Set<IArtifactDescriptor> keyDescriptors = descriptorsMap.get(key);
 
@@ -178,8 +408,10 @@ public class LocalArtifactRepository extends AbstractMavenArtifactRepository {
             }
         }
 
-        descriptors.remove(descriptor);
-        getArtifactFile(descriptor).delete();
+        // don't delete the file of a descriptor which has never been added (e.g. after a failed download)
+        if (descriptors.remove(descriptor)) {
+            getArtifactFile(descriptor).delete();
+        }
 
         changedDescriptors.remove(descriptor.getArtifactKey());
         // TODO this doesn't work if the descriptor is not in changedDescriptors
@@ -11,7 +11,9 @@
 package org.eclipse.tycho.p2.maven.repository;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -21,6 +23,7 @@ import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.tycho.p2.maven.repository.xmlio.MetadataIO;
 import org.eclipse.tycho.p2.repository.GAV;
 import org.eclipse.tycho.p2.repository.FileBasedTychoRepositoryIndex;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
 import org.eclipse.tycho.p2.repository.RepositoryLayoutHelper;
 import org.eclipse.tycho.p2.repository.RepositoryReader;
 import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
@@ -61,6 +64,9 @@ public class LocalMetadataRepository extends AbstractMavenMetadataRepository {
     }
 
     public void addInstallableUnit(IInstallableUnit unit, GAV gav) {
+        // the metadata file of the GAV is rewritten on save, so the existing units are needed
+        ensureLoaded();
+
         this.units.add(unit);
 
         Set<IInstallableUnit> gavUnits = unitsMap.get(gav);
@@ -76,8 +82,9 @@ public class LocalMetadataRepository extends AbstractMavenMetadataRepository {
     public void save() {
         File basedir = new File(getLocation());
 
-        TychoRepositoryIndex index = FileBasedTychoRepositoryIndex.createRepositoryIndex(basedir,
-                FileBasedTychoRepositoryIndex.METADATA_INDEX_RELPATH);
+        // only changes are written, so there is no need to re-read the index
+        TychoRepositoryIndex index = projectIndex != null ? projectIndex : FileBasedTychoRepositoryIndex
+                .createRepositoryIndex(basedir, FileBasedTychoRepositoryIndex.METADATA_INDEX_RELPATH);
 
         MetadataIO io = new MetadataIO();
 
@@ -92,7 +99,7 @@ public class LocalMetadataRepository extends AbstractMavenMetadataRepository {
                 file.getParentFile().mkdirs();
 
                 try {
-                    io.writeXML(gavUnits, file);
+                    writeMerged(io, gavUnits, file);
 
                     index.addProject(gav);
                 } catch (IOException e) {
@@ -110,6 +117,36 @@ public class LocalMetadataRepository extends AbstractMavenMetadataRepository {
         changedGAVs.clear();
     }
 
+    /**
+     * Writes the units of one GAV. Units which have been added to the file by other processes since
+     * it was read are preserved.
+     */
+    private void writeMerged(MetadataIO io, Set<IInstallableUnit> gavUnits, File file) throws IOException {
+        RepositoryFileLock lock = RepositoryFileLock.lock(file);
+        try {
+            if (file.exists()) {
+                // not read with readXML(File): its cache can't tell apart rewrites within the time stamp resolution
+                InputStream is = new FileInputStream(file);
+                try {
+                    for (IInstallableUnit unit : io.readXML(is)) {
+                        if (gavUnits.add(unit)) {
+                            units.add(unit);
+                        }
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+
+            File tempFile = new File(file.getPath() + ".tmp");
+            io.writeXML(gavUnits, tempFile);
+            RepositoryFileLock.replace(tempFile, file);
+            MetadataIO.invalidate(file);
+        } finally {
+            lock.release();
+        }
+    }
+
     @Override
     public boolean isModifiable() {
         return true;
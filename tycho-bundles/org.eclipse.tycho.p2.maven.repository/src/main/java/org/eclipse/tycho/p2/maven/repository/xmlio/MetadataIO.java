@@ -10,16 +10,20 @@
  *******************************************************************************/
 package org.eclipse.tycho.p2.maven.repository.xmlio;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -40,6 +44,35 @@ import org.xml.sax.SAXException;
 
 @SuppressWarnings("restriction")
 public class MetadataIO {
+
+    /** maximum number of files whose parsed content is kept in memory */
+    private static final int MAX_CACHED_FILES = 1000;
+
+    /**
+     * Parsed content of the recently read files. Installable units are immutable, so they can be
+     * shared by all readers of a file.
+     */
+    private static final Map<File, CachedUnits> CACHE = new LinkedHashMap<File, CachedUnits>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, CachedUnits> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+
+    private static class CachedUnits {
+        final long lastModified;
+        final long length;
+        final Set<IInstallableUnit> units;
+
+        CachedUnits(long lastModified, long length, Set<IInstallableUnit> units) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.units = units;
+        }
+    }
+
     private static class Writer extends MetadataWriter {
 
         public Writer(OutputStream output) throws UnsupportedEncodingException {
@@ -165,6 +198,32 @@ public class MetadataIO {
         return units;
     }
 
+    /**
+     * Reads the installable units from the given file. The parsed content is cached, so that
+     * subsequent reads of the same file are cheap as long as the file's modification time and size
+     * don't change.
+     * 
+     * @return a new, modifiable set of the units
+     */
+    public Set<IInstallableUnit> readXML(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        long lastModified = key.lastModified();
+        long length = key.length();
+
+        synchronized (CACHE) {
+            CachedUnits cached = CACHE.get(key);
+            if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+                return new LinkedHashSet<IInstallableUnit>(cached.units);
+            }
+        }
+
+        Set<IInstallableUnit> units = readXML(new BufferedInputStream(new FileInputStream(key)));
+        synchronized (CACHE) {
+            CACHE.put(key, new CachedUnits(lastModified, length, units));
+        }
+        return new LinkedHashSet<IInstallableUnit>(units);
+    }
+
     public void writeXML(Set<IInstallableUnit> units, OutputStream os) throws IOException {
         new Writer(os).write(units);
     }
@@ -175,6 +234,17 @@ public class MetadataIO {
             writeXML(units, os);
         } finally {
             os.close();
+            invalidate(file);
+        }
+    }
+
+    /**
+     * Removes the cached content of the given file. Needs to be called when the file has been
+     * replaced, because it may have been re-written within the resolution of its modification time.
+     */
+    public static void invalidate(File file) {
+        synchronized (CACHE) {
+            CACHE.remove(file.getAbsoluteFile());
         }
     }
 }
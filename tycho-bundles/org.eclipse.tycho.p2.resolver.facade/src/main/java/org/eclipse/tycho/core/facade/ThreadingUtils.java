@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.core.facade;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helpers for the thread pools used by Tycho, both on the Maven side and in the embedded OSGi
+ * framework. The number of threads of each pool is configured via a system property, i.e. via
+ * <code>-D&lt;property&gt;=&lt;threads&gt;</code> on the Maven command line.
+ */
+public class ThreadingUtils {
+
+    private ThreadingUtils() {
+    }
+
+    /**
+     * Returns the number of threads configured in the given system property, or the default if
+     * the property is not set. The returned value is at least 1.
+     *
+     * @throws IllegalArgumentException
+     *             if the property value is not a number
+     */
+    public static int getThreads(String property, int defaultThreads) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return Math.max(1, defaultThreads);
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of -D" + property + ": " + value, e);
+        }
+    }
+
+    /**
+     * Returns a thread factory for daemon threads named with the given prefix and a running number.
+     */
+    public static ThreadFactory newDaemonThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
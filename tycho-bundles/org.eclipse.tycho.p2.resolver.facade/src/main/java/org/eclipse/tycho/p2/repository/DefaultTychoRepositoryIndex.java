@@ -18,6 +18,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -53,10 +54,18 @@ public abstract class DefaultTychoRepositoryIndex implements TychoRepositoryInde
         gavs.remove(gav);
     }
 
+    protected boolean contains(GAV gav) {
+        return gavs.contains(gav);
+    }
+
     protected static void write(TychoRepositoryIndex index, OutputStream os) throws IOException {
+        write(index.getProjectGAVs(), os);
+    }
+
+    protected static void write(Collection<GAV> gavs, OutputStream os) throws IOException {
         Writer out = new OutputStreamWriter(new BufferedOutputStream(os), ENCODING);
         try {
-            for (GAV gav : index.getProjectGAVs()) {
+            for (GAV gav : gavs) {
                 out.write(gav.toExternalForm());
                 out.write(EOL);
             }
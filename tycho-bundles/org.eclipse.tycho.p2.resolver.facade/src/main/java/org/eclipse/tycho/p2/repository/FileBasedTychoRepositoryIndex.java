@@ -10,45 +10,198 @@
  *******************************************************************************/
 package org.eclipse.tycho.p2.repository;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * Simplistic local Maven repository index to allow efficient lookup of all installed Tycho
  * projects. The content is persisted in a local file.
+ * <p>
+ * The file is treated as an append-only journal: {@link #save()} only appends the projects which
+ * have been added since the index was loaded. The file is only rewritten if projects have been
+ * removed, or if it contains many duplicate entries (e.g. from concurrent builds). All file
+ * accesses are guarded by a {@link RepositoryFileLock}, so that the index can be used by several
+ * Maven processes at the same time. Removed projects are only dropped from the file if their p2
+ * metadata file is still missing when the file is rewritten, so that projects which have been
+ * installed again by other processes are kept.
+ * </p>
  */
 public class FileBasedTychoRepositoryIndex extends DefaultTychoRepositoryIndex {
-    private final File storageFile;
 
     public static final String ARTIFACTS_INDEX_RELPATH = ".meta/p2-artifacts.properties";
 
     public static final String METADATA_INDEX_RELPATH = ".meta/p2-local-metadata.properties";
 
-    private FileBasedTychoRepositoryIndex(File indexFile, Set<GAV> content) {
+    /** minimal number of duplicate lines before the index file is compacted */
+    private static final int COMPACTION_THRESHOLD = 64;
+
+    private final File storageFile;
+
+    private final File basedir;
+
+    /** classifier of the file which exists for each project, or <code>null</code> if unknown */
+    private final String projectFileClassifier;
+
+    private final String projectFileExtension;
+
+    private final Set<GAV> addedGAVs = new LinkedHashSet<GAV>();
+
+    private final Set<GAV> removedGAVs = new LinkedHashSet<GAV>();
+
+    private boolean compactionNeeded;
+
+    private FileBasedTychoRepositoryIndex(File basedir, String relpath, Set<GAV> content, boolean compactionNeeded) {
         super(content);
-        this.storageFile = indexFile;
+        this.basedir = basedir;
+        this.storageFile = new File(basedir, relpath);
+        this.compactionNeeded = compactionNeeded;
+        if (ARTIFACTS_INDEX_RELPATH.equals(relpath)) {
+            projectFileClassifier = RepositoryLayoutHelper.CLASSIFIER_P2_ARTIFACTS;
+            projectFileExtension = RepositoryLayoutHelper.EXTENSION_P2_ARTIFACTS;
+        } else if (METADATA_INDEX_RELPATH.equals(relpath)) {
+            projectFileClassifier = RepositoryLayoutHelper.CLASSIFIER_P2_METADATA;
+            projectFileExtension = RepositoryLayoutHelper.EXTENSION_P2_METADATA;
+        } else {
+            projectFileClassifier = null;
+            projectFileExtension = null;
+        }
+    }
+
+    @Override
+    public synchronized Set<GAV> getProjectGAVs() {
+        return super.getProjectGAVs();
+    }
+
+    @Override
+    public synchronized void addProject(GAV gav) {
+        if (!contains(gav)) {
+            super.addProject(gav);
+            if (!removedGAVs.remove(gav)) {
+                addedGAVs.add(gav);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void remove(GAV gav) {
+        if (contains(gav)) {
+            super.remove(gav);
+            if (!addedGAVs.remove(gav)) {
+                removedGAVs.add(gav);
+            }
+        }
     }
 
-    public void save() throws IOException {
+    /**
+     * Writes the changes since the last save to the index file. Changes made concurrently by other
+     * processes are preserved.
+     */
+    public synchronized void save() throws IOException {
+        if (addedGAVs.isEmpty() && removedGAVs.isEmpty() && !compactionNeeded && storageFile.exists()) {
+            return;
+        }
+
         storageFile.getParentFile().mkdirs();
-        DefaultTychoRepositoryIndex.write(this, new FileOutputStream(storageFile));
+        RepositoryFileLock lock = RepositoryFileLock.lock(storageFile);
+        try {
+            if (!removedGAVs.isEmpty() || compactionNeeded) {
+                rewrite();
+            } else {
+                append();
+            }
+        } finally {
+            lock.release();
+        }
+
+        addedGAVs.clear();
+        removedGAVs.clear();
+        compactionNeeded = false;
+    }
+
+    private void append() throws IOException {
+        boolean lineBreakNeeded = !endsWithLineBreak(storageFile);
+        FileOutputStream os = new FileOutputStream(storageFile, true);
+        if (lineBreakNeeded) {
+            // terminate the partial line of an interrupted append, so that the first entry isn't lost
+            try {
+                os.write(EOL.getBytes(ENCODING));
+            } catch (IOException e) {
+                os.close();
+                throw e;
+            }
+        }
+        DefaultTychoRepositoryIndex.write(addedGAVs, os);
+    }
+
+    private static boolean endsWithLineBreak(File file) throws IOException {
+        if (file.length() == 0) {
+            return true;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(raf.length() - 1);
+            return raf.read() == EOL.charAt(0);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void rewrite() throws IOException {
+        // merge with the current file content, which may contain additions of other processes
+        Set<GAV> content = new LinkedHashSet<GAV>();
+        if (storageFile.exists()) {
+            content.addAll(readContent(storageFile).gavs);
+        }
+        content.addAll(super.getProjectGAVs());
+        for (GAV gav : removedGAVs) {
+            // the removal was decided when the index was loaded; re-check while the index is locked
+            if (isProjectFileMissing(gav)) {
+                content.remove(gav);
+            } else {
+                super.addProject(gav);
+            }
+        }
+
+        File tempFile = new File(storageFile.getPath() + ".tmp");
+        DefaultTychoRepositoryIndex.write(content, new FileOutputStream(tempFile));
+        RepositoryFileLock.replace(tempFile, storageFile);
+    }
+
+    private boolean isProjectFileMissing(GAV gav) {
+        if (projectFileClassifier == null) {
+            return false;
+        }
+        String relpath = RepositoryLayoutHelper.getRelativePath(gav, projectFileClassifier, projectFileExtension);
+        return !new File(basedir, relpath).exists();
     }
 
     public static TychoRepositoryIndex createRepositoryIndex(File basedir, String relpath) {
         File inputFile = new File(basedir, relpath);
-        Set<GAV> content = new LinkedHashSet<GAV>();
-        if (inputFile.exists()) {
+        if (!inputFile.exists()) {
+            return new FileBasedTychoRepositoryIndex(basedir, relpath, new LinkedHashSet<GAV>(), false);
+        }
+        try {
+            IndexContent content;
+            RepositoryFileLock lock = RepositoryFileLock.lock(inputFile);
             try {
-                content = DefaultTychoRepositoryIndex.read(new FileInputStream(inputFile));
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to load index file " + inputFile, e);
+                content = readContent(inputFile);
+            } finally {
+                lock.release();
             }
+            int duplicates = content.lines - content.gavs.size();
+            boolean compactionNeeded = content.corrupt
+                    || (duplicates >= COMPACTION_THRESHOLD && duplicates > content.gavs.size() / 4);
+            return new FileBasedTychoRepositoryIndex(basedir, relpath, content.gavs, compactionNeeded);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load index file " + inputFile, e);
         }
-        return new FileBasedTychoRepositoryIndex(inputFile, content);
     }
 
     public static void addProject(File basedir, String groupId, String artifactId, String version) throws IOException {
@@ -62,4 +215,41 @@ public class FileBasedTychoRepositoryIndex extends DefaultTychoRepositoryIndex {
         metadataIndex.addProject(new GAV(groupId, artifactId, version));
         metadataIndex.save();
     }
+
+    private static class IndexContent {
+        final Set<GAV> gavs = new LinkedHashSet<GAV>();
+        int lines;
+
+        /** whether there were partial lines, e.g. from a process killed while appending */
+        boolean corrupt;
+    }
+
+    /**
+     * Reads the index file. Lines which can't be parsed and an unterminated last line are skipped.
+     */
+    private static IndexContent readContent(File file) throws IOException {
+        IndexContent result = new IndexContent();
+        boolean lastLineComplete = endsWithLineBreak(file);
+        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+        try {
+            String str = br.readLine();
+            while (str != null) {
+                String next = br.readLine();
+                if (next == null && !lastLineComplete) {
+                    result.corrupt = true;
+                } else if (str.length() > 0) {
+                    try {
+                        result.gavs.add(GAV.parse(str));
+                        result.lines++;
+                    } catch (IllegalArgumentException e) {
+                        result.corrupt = true;
+                    }
+                }
+                str = next;
+            }
+        } finally {
+            br.close();
+        }
+        return result;
+    }
 }
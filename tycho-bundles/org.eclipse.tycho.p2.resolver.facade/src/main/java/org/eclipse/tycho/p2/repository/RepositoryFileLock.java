@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.repository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a file in the local Maven repository, which coordinates the threads of this
+ * JVM as well as other Maven processes using the same local repository. The lock is held on a
+ * separate <code>.lock</code> file, so that the guarded file itself may be replaced while the lock
+ * is held. The lock file is deleted when the lock is released.
+ * <p>
+ * Locks should only be held while reading and writing the guarded file, and never while waiting
+ * for other resources:
+ * </p>
+ *
+ * <pre>
+ * RepositoryFileLock lock = RepositoryFileLock.lock(file);
+ * try {
+ *     // read, merge and write the file
+ * } finally {
+ *     lock.release();
+ * }
+ * </pre>
+ */
+public final class RepositoryFileLock {
+
+    /**
+     * Only the first byte of the lock file is locked. The owner of the lock writes a token behind
+     * it, so that waiting processes can detect if the lock file has been deleted in the meantime.
+     * (On Windows, locked regions can't be read through other file handles.)
+     */
+    private static final int TOKEN_OFFSET = 1;
+
+    /** file locks can only be held once per JVM, so threads are coordinated separately */
+    private static final Map<String, JvmLock> JVM_LOCKS = new HashMap<String, JvmLock>();
+
+    private final File lockFile;
+
+    private final JvmLock jvmLock;
+
+    private FileLock fileLock;
+
+    /**
+     * Second handle on the lock file, used to check that the locked file is still the current one.
+     * It is only closed on release, because on POSIX systems closing any handle of a file releases
+     * all locks of the process on that file.
+     */
+    private InputStream checkStream;
+
+    private RepositoryFileLock(File lockFile, JvmLock jvmLock) {
+        this.lockFile = lockFile;
+        this.jvmLock = jvmLock;
+    }
+
+    /**
+     * Acquires the lock for the given file, waiting until it is released by other threads and
+     * processes.
+     */
+    public static RepositoryFileLock lock(File file) throws IOException {
+        File lockFile = new File(file.getAbsolutePath() + ".lock");
+        RepositoryFileLock result = new RepositoryFileLock(lockFile, acquireJvmLock(lockFile.getPath()));
+        try {
+            result.lockFile();
+            return result;
+        } catch (IOException e) {
+            releaseJvmLock(result.jvmLock);
+            throw e;
+        } catch (RuntimeException e) {
+            releaseJvmLock(result.jvmLock);
+            throw e;
+        }
+    }
+
+    public void release() throws IOException {
+        try {
+            // deleted while still locked, so that processes waiting for the old file notice it
+            boolean deleted = lockFile.delete();
+            closeFileLock();
+            if (!deleted) {
+                // open files can't be deleted on Windows; this fails if another process waits for the lock
+                lockFile.delete();
+            }
+        } finally {
+            releaseJvmLock(jvmLock);
+        }
+    }
+
+    /**
+     * Replaces the target file with the given, completely written file, so that readers never see
+     * partially written content. The target is only deleted first if it can't be replaced by a
+     * rename (e.g. on Windows).
+     */
+    public static void replace(File tempFile, File target) throws IOException {
+        if (tempFile.renameTo(target)) {
+            return;
+        }
+        target.delete();
+        if (!tempFile.renameTo(target)) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile + " to " + target);
+        }
+    }
+
+    private void lockFile() throws IOException {
+        while (true) {
+            lockFile.getParentFile().mkdirs();
+            RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+            try {
+                fileLock = raf.getChannel().lock(0, TOKEN_OFFSET, false);
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+            boolean current = false;
+            try {
+                current = isCurrentLockFile(raf);
+            } finally {
+                if (!current) {
+                    closeFileLock();
+                }
+            }
+            if (current) {
+                return;
+            }
+            // the previous owner has deleted the file; try again on the file which is there now
+        }
+    }
+
+    /**
+     * Checks if the locked file is still the file at the path of the lock file.
+     */
+    private boolean isCurrentLockFile(RandomAccessFile raf) throws IOException {
+        byte[] token = UUID.randomUUID().toString().getBytes("UTF-8");
+        raf.setLength(TOKEN_OFFSET + token.length);
+        raf.seek(TOKEN_OFFSET);
+        raf.write(token);
+
+        try {
+            checkStream = new FileInputStream(lockFile);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        if (checkStream.skip(TOKEN_OFFSET) != TOKEN_OFFSET) {
+            return false;
+        }
+        byte[] actual = new byte[token.length];
+        int offset = 0;
+        int read;
+        while (offset < actual.length && (read = checkStream.read(actual, offset, actual.length - offset)) != -1) {
+            offset += read;
+        }
+        return offset == actual.length && checkStream.read() == -1 && Arrays.equals(token, actual);
+    }
+
+    private void closeFileLock() throws IOException {
+        try {
+            try {
+                fileLock.release();
+            } finally {
+                fileLock.channel().close();
+            }
+        } finally {
+            if (checkStream != null) {
+                checkStream.close();
+                checkStream = null;
+            }
+        }
+    }
+
+    private static JvmLock acquireJvmLock(String key) {
+        JvmLock jvmLock;
+        synchronized (JVM_LOCKS) {
+            jvmLock = JVM_LOCKS.get(key);
+            if (jvmLock == null) {
+                jvmLock = new JvmLock(key);
+                JVM_LOCKS.put(key, jvmLock);
+            }
+            jvmLock.users++;
+        }
+        jvmLock.lock.lock();
+        return jvmLock;
+    }
+
+    private static void releaseJvmLock(JvmLock jvmLock) {
+        jvmLock.lock.unlock();
+        synchronized (JVM_LOCKS) {
+            if (--jvmLock.users == 0) {
+                JVM_LOCKS.remove(jvmLock.key);
+            }
+        }
+    }
+
+    private static final class JvmLock {
+        final String key;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /** threads holding or waiting for the lock; guarded by {@link RepositoryFileLock#JVM_LOCKS} */
+        int users;
+
+        JvmLock(String key) {
+            this.key = key;
+        }
+    }
+}
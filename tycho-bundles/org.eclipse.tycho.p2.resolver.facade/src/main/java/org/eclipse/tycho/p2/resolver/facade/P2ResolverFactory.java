@@ -19,5 +19,16 @@ public interface P2ResolverFactory {
     public ResolutionContext createResolutionContext(File localMavenRepositoryRoot, boolean offline,
             boolean disableP2Mirrors, MavenLogger logger);
 
+    /**
+     * Creates a resolution context which extends the given shared context. The new context sees
+     * all content of the shared context, while content added to the new context is not visible in
+     * the shared context. This allows to set up the content which is common to all projects of a
+     * reactor only once.
+     * 
+     * @param sharedContext
+     *            a context obtained from this factory; must not be modified after this call
+     */
+    public ResolutionContext createResolutionContext(ResolutionContext sharedContext, MavenLogger logger);
+
     public P2Resolver createResolver(MavenLogger logger);
 }
@@ -24,11 +24,14 @@ import org.eclipse.tycho.p2.target.facade.TargetDefinitionSyntaxException;
 /**
  * The resolution context is the content against which the dependencies of a project can be
  * resolved. For each project, a resolution context is created according to the target platform
- * configuration. Then the p2 resolver narrows it down to create the actual "target platform". The
- * target platform is hence a subset of the resolution context.
+ * configuration. Content common to several projects may be set up once in a shared context, which
+ * is then extended by the contexts of the individual projects. Then the p2 resolver narrows it down
+ * to create the actual "target platform". The target platform is hence a subset of the resolution
+ * context.
  * 
  * @see P2Resolver
  * @see P2ResolutionResult
+ * @see P2ResolverFactory#createResolutionContext(ResolutionContext, org.eclipse.tycho.core.facade.MavenLogger)
  * @see org.eclipse.tycho.core.TargetPlatform
  */
 public interface ResolutionContext {
@@ -40,6 +43,15 @@ public interface ResolutionContext {
 
     public void addP2Repository(URI location);
 
+    /**
+     * Adds the p2 repositories at the given locations. The repositories may be loaded concurrently,
+     * but are added in the given order. Repositories which cannot be loaded are skipped.
+     * 
+     * @return the exceptions of the repositories which could not be loaded, in the order of the
+     *         locations
+     */
+    public Map<URI, Exception> addP2Repositories(List<URI> locations);
+
     // TODO document
     public void addTargetDefinition(TargetDefinition definition, List<Map<String, String>> environments)
             throws TargetDefinitionSyntaxException, TargetDefinitionResolutionException;
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.tycho.test.util.InstallableUnitUtil;
+import org.junit.Test;
+
+public class InstallableUnitPoolViewTest {
+
+    private static final IInstallableUnit CONTENT_UNIT = InstallableUnitUtil.createIUCapability("content", "1.0.0",
+            "content", "1.0.0");
+
+    private static final IInstallableUnit REPOSITORY_UNIT = InstallableUnitUtil.createIUCapability("repository",
+            "1.0.0", "repository", "1.0.0");
+
+    private static final IInstallableUnit REACTOR_UNIT_IN_REPOSITORY = InstallableUnitUtil.createIUCapability(
+            "reactor", "1.0.0", "reactor", "1.0.0");
+
+    private static final IInstallableUnit REACTOR_UNIT = InstallableUnitUtil.createIUCapability("reactor", "1.1.0",
+            "reactor", "1.1.0");
+
+    private InstallableUnitPool pool = new InstallableUnitPool(Arrays.asList(CONTENT_UNIT), Arrays.asList(
+            REPOSITORY_UNIT, REACTOR_UNIT_IN_REPOSITORY, CONTENT_UNIT));
+
+    @Test
+    public void testRepositoryDuplicatesOfContentUnitsAreIgnored() {
+        assertEquals(3, pool.size());
+        assertTrue(pool.isContentUnit(CONTENT_UNIT));
+    }
+
+    @Test
+    public void testRepositoryUnitsWithReactorIdsAreHidden() {
+        InstallableUnitPoolView subject = new InstallableUnitPoolView(pool, Collections.singleton("reactor"),
+                Arrays.asList(REACTOR_UNIT));
+
+        Set<IInstallableUnit> allUnits = subject.query(QueryUtil.ALL_UNITS, new NullProgressMonitor()).toSet();
+
+        assertEquals(3, allUnits.size());
+        assertTrue(allUnits.contains(CONTENT_UNIT));
+        assertTrue(allUnits.contains(REPOSITORY_UNIT));
+        assertTrue(allUnits.contains(REACTOR_UNIT));
+    }
+
+    @Test
+    public void testIndexesOnlyReturnVisibleUnits() {
+        InstallableUnitPoolView subject = new InstallableUnitPoolView(pool, Collections.singleton("reactor"),
+                Arrays.asList(REACTOR_UNIT));
+
+        List<IInstallableUnit> providers = subject.getUnitsProviding(IInstallableUnit.NAMESPACE_IU_ID, "reactor");
+
+        assertEquals(Arrays.asList(REACTOR_UNIT), providers);
+        assertEquals(Arrays.asList(REACTOR_UNIT), subject.getUnitsById("reactor"));
+    }
+
+    @Test
+    public void testMatchQueriesConsiderAdditionalUnits() {
+        InstallableUnitPoolView subject = new InstallableUnitPoolView(pool, Collections.<String> emptySet(),
+                Arrays.asList(REACTOR_UNIT));
+
+        Set<IInstallableUnit> result = subject.query(QueryUtil.createIUQuery("reactor"), new NullProgressMonitor())
+                .toSet();
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(REACTOR_UNIT));
+        assertTrue(result.contains(REACTOR_UNIT_IN_REPOSITORY));
+    }
+}
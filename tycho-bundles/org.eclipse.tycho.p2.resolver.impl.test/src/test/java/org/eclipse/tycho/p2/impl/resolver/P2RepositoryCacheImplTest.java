@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.repository.IRepositoryReference;
+import org.eclipse.equinox.p2.repository.metadata.spi.AbstractMetadataRepository;
+import org.eclipse.tycho.test.util.InstallableUnitUtil;
+import org.junit.Test;
+
+public class P2RepositoryCacheImplTest {
+
+    private static final URI LOCATION_A = URI.create("http://example.org/a");
+
+    private static final URI LOCATION_B = URI.create("http://example.org/b");
+
+    private static final URI LOCATION_C = URI.create("http://example.org/c");
+
+    private final Object owner = new Object();
+
+    @Test
+    public void testRepositoryIsLoadedOnce() throws Exception {
+        P2RepositoryCacheImpl subject = new P2RepositoryCacheImpl(100);
+        CountingLoader loader = new CountingLoader(1);
+
+        CachedRepositories first = subject.loadRepository(LOCATION_A, owner, loader);
+        CachedRepositories second = subject.loadRepository(LOCATION_A, owner, loader);
+
+        assertSame(first, second);
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, subject.getHits());
+        assertEquals(1, subject.getMisses());
+        assertSame(first.getMetadataRepository(), subject.getMetadataRepository(LOCATION_A));
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        final P2RepositoryCacheImpl subject = new P2RepositoryCacheImpl(100);
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        final CountingLoader loader = new CountingLoader(1) {
+            @Override
+            public CachedRepositories load(URI location) throws ProvisionException {
+                loadStarted.countDown();
+                try {
+                    loadReleased.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.load(location);
+            }
+        };
+
+        final List<CachedRepositories> results = Collections.synchronizedList(new ArrayList<CachedRepositories>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(subject.loadRepository(LOCATION_A, owner, loader));
+                    } catch (ProvisionException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        loadStarted.await();
+        loadReleased.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loader.loads.get());
+        assertEquals(4, results.size());
+        for (CachedRepositories result : results) {
+            assertSame(results.get(0), result);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedUnpinnedRepositoryIsEvicted() throws Exception {
+        P2RepositoryCacheImpl subject = new P2RepositoryCacheImpl(4);
+        CountingLoader loader = new CountingLoader(2);
+
+        subject.loadRepository(LOCATION_A, null, loader);
+        subject.loadRepository(LOCATION_B, null, loader);
+        subject.loadRepository(LOCATION_A, null, loader);
+        subject.loadRepository(LOCATION_C, null, loader);
+
+        assertEquals(1, subject.getEvictions());
+        assertNotNull(subject.getMetadataRepository(LOCATION_A));
+        assertNull(subject.getMetadataRepository(LOCATION_B));
+
+        subject.loadRepository(LOCATION_B, null, loader);
+        assertEquals(1, subject.getReloads());
+        assertEquals(4, loader.loads.get());
+    }
+
+    @Test
+    public void testPinnedRepositoryIsNotEvicted() throws Exception {
+        P2RepositoryCacheImpl subject = new P2RepositoryCacheImpl(2);
+        CountingLoader loader = new CountingLoader(2);
+
+        subject.loadRepository(LOCATION_A, owner, loader);
+        subject.loadRepository(LOCATION_B, owner, loader);
+
+        assertEquals(0, subject.getEvictions());
+        assertNotNull(subject.getMetadataRepository(LOCATION_A));
+        assertNotNull(subject.getMetadataRepository(LOCATION_B));
+    }
+
+    @Test
+    public void testFailedLoadIsRetried() throws Exception {
+        P2RepositoryCacheImpl subject = new P2RepositoryCacheImpl(100);
+        CountingLoader failingLoader = new CountingLoader(1) {
+            @Override
+            public CachedRepositories load(URI location) throws ProvisionException {
+                throw new IllegalStateException("not available");
+            }
+        };
+        try {
+            subject.loadRepository(LOCATION_A, owner, failingLoader);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        CountingLoader loader = new CountingLoader(1);
+        assertNotNull(subject.loadRepository(LOCATION_A, owner, loader));
+        assertEquals(1, loader.loads.get());
+    }
+
+    private static class CountingLoader implements P2RepositoryCache.RepositoryLoader {
+        final AtomicInteger loads = new AtomicInteger();
+
+        private final int unitsPerRepository;
+
+        CountingLoader(int unitsPerRepository) {
+            this.unitsPerRepository = unitsPerRepository;
+        }
+
+        public CachedRepositories load(URI location) throws ProvisionException {
+            loads.incrementAndGet();
+            List<IInstallableUnit> units = new ArrayList<IInstallableUnit>();
+            for (int i = 0; i < unitsPerRepository; i++) {
+                units.add(InstallableUnitUtil.createIU(location.getPath() + i, "1.0.0"));
+            }
+            return new CachedRepositories(new InMemoryMetadataRepository(units), null);
+        }
+    }
+
+    private static class InMemoryMetadataRepository extends AbstractMetadataRepository {
+        private final Collection<IInstallableUnit> units;
+
+        InMemoryMetadataRepository(Collection<IInstallableUnit> units) {
+            super(null);
+            this.units = units;
+        }
+
+        @Override
+        public void initialize(RepositoryState state) {
+        }
+
+        public IQueryResult<IInstallableUnit> query(IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+            return query.perform(units.iterator());
+        }
+
+        public Collection<IRepositoryReference> getReferences() {
+            return Collections.emptyList();
+        }
+    }
+}
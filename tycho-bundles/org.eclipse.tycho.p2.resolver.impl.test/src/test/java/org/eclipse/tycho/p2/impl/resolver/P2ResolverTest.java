@@ -23,7 +23,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
@@ -69,6 +71,37 @@ public class P2ResolverTest extends P2ResolverTestBase {
         Assert.assertEquals(1, result.getNonReactorUnits().size());
     }
 
+    @Test
+    public void basicInParallelForMultipleEnvironments() throws Exception {
+        List<Map<String, String>> environments = new ArrayList<Map<String, String>>();
+        for (String os : new String[] { "linux", "win32", "macosx" }) {
+            Map<String, String> properties = new LinkedHashMap<String, String>(getEnvironments().get(0));
+            properties.put("osgi.os", os);
+            environments.add(properties);
+        }
+        impl.setEnvironments(environments);
+
+        context.addP2Repository(resourceFile("repositories/e342").toURI());
+
+        File bundle = resourceFile("resolver/bundle01");
+        String artifactId = "org.eclipse.tycho.p2.impl.resolver.test.bundle01";
+        addReactorProject(bundle, TYPE_ECLIPSE_PLUGIN, artifactId);
+
+        List<P2ResolutionResult> results;
+        System.setProperty(P2ResolverImpl.PROP_ENVIRONMENT_THREADS, "3");
+        try {
+            results = impl.resolveProject(context, bundle);
+        } finally {
+            System.clearProperty(P2ResolverImpl.PROP_ENVIRONMENT_THREADS);
+        }
+
+        Assert.assertEquals(3, results.size());
+        for (P2ResolutionResult result : results) {
+            Assert.assertEquals(2, result.getArtifacts().size());
+            Assert.assertEquals(1, result.getNonReactorUnits().size());
+        }
+    }
+
     @Test
     public void siteConflictingDependenciesResolver() throws IOException {
         context.addP2Repository(resourceFile("repositories/e342").toURI());
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.junit.Test;
+
+public class ParallelRepositoryLoaderTest {
+
+    private static final URI SLOW = URI.create("http://example.org/slow");
+
+    private static final URI FAILING = URI.create("http://example.org/failing");
+
+    private static final URI FAST = URI.create("http://example.org/fast");
+
+    private static final URI ALSO_FAILING = URI.create("http://example.org/alsoFailing");
+
+    private final ParallelRepositoryLoader.Loader<String> loader = new ParallelRepositoryLoader.Loader<String>() {
+        public String load(URI location) throws ProvisionException {
+            if (location == SLOW) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            } else if (location == FAILING) {
+                throw new ProvisionException("cannot load " + location);
+            } else if (location == ALSO_FAILING) {
+                throw new IllegalStateException("cannot load " + location);
+            }
+            return location.getPath();
+        }
+    };
+
+    @Test
+    public void testResultsAndFailuresAreOrdered() {
+        List<URI> locations = Arrays.asList(SLOW, FAILING, FAST, ALSO_FAILING);
+
+        Map<URI, Exception> failures = new LinkedHashMap<URI, Exception>();
+        List<String> result = new ParallelRepositoryLoader(4).loadAll(locations, loader, failures);
+
+        assertEquals(Arrays.asList("/slow", null, "/fast", null), result);
+        assertEquals(Arrays.asList(FAILING, ALSO_FAILING), new ArrayList<URI>(failures.keySet()));
+        assertTrue(failures.get(FAILING) instanceof ProvisionException);
+        assertTrue(failures.get(ALSO_FAILING) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testSingleThread() {
+        List<URI> locations = Arrays.asList(SLOW, FAILING, FAST);
+
+        Map<URI, Exception> failures = new LinkedHashMap<URI, Exception>();
+        List<String> result = new ParallelRepositoryLoader(1).loadAll(locations, loader, failures);
+
+        assertEquals(Arrays.asList("/slow", null, "/fast"), result);
+        assertEquals(Arrays.asList(FAILING), new ArrayList<URI>(failures.keySet()));
+    }
+}
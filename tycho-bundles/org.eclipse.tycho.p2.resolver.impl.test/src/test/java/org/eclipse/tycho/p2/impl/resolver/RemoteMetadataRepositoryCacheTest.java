@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import static org.eclipse.tycho.p2.impl.resolver.P2ResolverTest.getLocalRepositoryLocation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.tycho.p2.impl.test.MavenLoggerStub;
+import org.eclipse.tycho.test.util.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RemoteMetadataRepositoryCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private File repositoryDir;
+
+    private URI location;
+
+    private IMetadataRepositoryManager manager;
+
+    private MavenLoggerStub logger = new MavenLoggerStub();
+
+    @Before
+    public void startHttpServer() throws Exception {
+        repositoryDir = tempFolder.newFolder("repository");
+        copy(new File("resources/repositories/e342/content.xml"), new File(repositoryDir, "content.xml"));
+
+        server = HttpServer.startServer();
+        location = new URI(server.addServer("e342", repositoryDir));
+
+        manager = (IMetadataRepositoryManager) P2ResolverFactoryImpl.getProvisioningAgent(
+                getLocalRepositoryLocation(), false).getService(IMetadataRepositoryManager.SERVICE_NAME);
+    }
+
+    @After
+    public void stopHttpServer() throws Exception {
+        stopServer();
+        manager.removeRepository(location);
+    }
+
+    @Test
+    public void testUnchangedRepositoryIsReadFromCache() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+
+        IMetadataRepository loaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+        IMetadataRepository cached = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+
+        assertFalse(loaded.getClass().equals(cached.getClass()));
+        assertEquals(getUnits(loaded), getUnits(cached));
+        assertEquals(loaded.getProperties().get("p2.timestamp"), cached.getProperties().get("p2.timestamp"));
+    }
+
+    @Test
+    public void testModifiedRepositoryIsLoadedAgain() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+
+        IMetadataRepository loaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+        File contentFile = new File(repositoryDir, "content.xml");
+        contentFile.setLastModified(contentFile.lastModified() + 60 * 1000);
+        IMetadataRepository reloaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+
+        assertSame(loaded.getClass(), reloaded.getClass());
+    }
+
+    @Test
+    public void testCorruptedValidatorsAreTreatedAsOutdated() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+
+        IMetadataRepository loaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+        File validatorsFile = new File(new File(cacheDir, InstallableUnitFingerprint.sha1(location.toString())),
+                "validators.properties");
+        OutputStream os = new FileOutputStream(validatorsFile);
+        try {
+            os.write("files=x\n".getBytes("ISO-8859-1"));
+        } finally {
+            os.close();
+        }
+        IMetadataRepository reloaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+
+        assertSame(loaded.getClass(), reloaded.getClass());
+    }
+
+    @Test
+    public void testOfflineUsesCacheWithoutRevalidation() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+
+        IMetadataRepository loaded = new RemoteMetadataRepositoryCache(cacheDir, false).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+        stopServer();
+        IMetadataRepository cached = new RemoteMetadataRepositoryCache(cacheDir, true).loadRepository(location,
+                manager, new NullProgressMonitor(), logger);
+
+        assertEquals(getUnits(loaded), getUnits(cached));
+    }
+
+    private void stopServer() throws Exception {
+        HttpServer _server = server;
+        server = null;
+        if (_server != null) {
+            _server.stop();
+        }
+    }
+
+    private static Set<IInstallableUnit> getUnits(IMetadataRepository repository) {
+        return repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        InputStream is = new FileInputStream(source);
+        try {
+            OutputStream os = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[10240];
+                int n;
+                while ((n = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, n);
+                }
+            } finally {
+                os.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+}
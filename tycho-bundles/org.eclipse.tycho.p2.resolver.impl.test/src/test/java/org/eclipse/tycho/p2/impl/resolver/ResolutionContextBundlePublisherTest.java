@@ -18,6 +18,7 @@ import static org.eclipse.tycho.p2.test.matcher.InstallableUnitMatchers.hasVersi
 import static org.eclipse.tycho.test.util.ResourceUtil.resourceFile;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
@@ -70,6 +71,18 @@ public class ResolutionContextBundlePublisherTest {
         assertThat(artifactRepo, entry(artifactOfTheUnit).hasContent(bundleFile));
     }
 
+    @Test
+    public void testRepeatedPomDependencyIsPublishedOnce() throws Exception {
+        File bundleFile = resourceFile("pom-dependencies/org.eclipse.osgi_3.5.2.R35x_v20100126.jar");
+        IArtifactFacade bundleArtifact = new ArtifactMock(bundleFile, GROUP_ID, ARTIFACT_ID, VERSION, "jar");
+        localRepo.addArtifact(bundleArtifact);
+
+        IInstallableUnit firstUnit = subject.attemptToPublishBundle(bundleArtifact);
+        IInstallableUnit secondUnit = subject.attemptToPublishBundle(bundleArtifact);
+
+        assertSame(firstUnit, secondUnit);
+    }
+
     @Test
     public void testPomDependencyOnPlainJar() throws Exception {
         File jarFile = resourceFile("pom-dependencies/non-bundle.jar");
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.tycho.p2.impl.test.MavenLoggerStub;
+import org.eclipse.tycho.test.util.InstallableUnitUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResolutionResultCacheTest {
+
+    private static final IInstallableUnit ROOT_UNIT = InstallableUnitUtil.createIURequirement("root", "1.0.0",
+            "dependency", "[1.0.0,2.0.0)");
+
+    private static final IInstallableUnit DEPENDENCY_UNIT = InstallableUnitUtil.createIU("dependency", "1.0.0");
+
+    private static final IInstallableUnit OTHER_UNIT = InstallableUnitUtil.createIU("other", "1.0.0");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Map<String, String> selectionContext = new HashMap<String, String>();
+
+    private final List<IRequirement> noRequirements = Collections.emptyList();
+
+    private final Set<IInstallableUnit> noUnits = Collections.emptySet();
+
+    @Test
+    public void testKeyDependsOnAvailableUnits() {
+        String key = ResolutionResultCache.computeKey(selectionContext, Collections.singleton(ROOT_UNIT),
+                noRequirements, createPoolView(DEPENDENCY_UNIT));
+
+        assertEquals(key, ResolutionResultCache.computeKey(selectionContext, Collections.singleton(ROOT_UNIT),
+                noRequirements, createPoolView(DEPENDENCY_UNIT)));
+        assertFalse(key.equals(ResolutionResultCache.computeKey(selectionContext,
+                Collections.singleton(ROOT_UNIT), noRequirements, createPoolView(DEPENDENCY_UNIT, OTHER_UNIT))));
+    }
+
+    @Test
+    public void testKeyDependsOnUnitContent() {
+        IInstallableUnit changedDependencyUnit = InstallableUnitUtil.createIURequirement("dependency", "1.0.0",
+                "other", "1.0.0");
+
+        String key = ResolutionResultCache.computeKey(selectionContext, Collections.singleton(ROOT_UNIT),
+                noRequirements, createPoolView(DEPENDENCY_UNIT));
+
+        assertFalse(key.equals(ResolutionResultCache.computeKey(selectionContext, Collections.singleton(ROOT_UNIT),
+                noRequirements, createPoolView(changedDependencyUnit))));
+    }
+
+    @Test
+    public void testStoredResultIsRestored() throws Exception {
+        InstallableUnitPoolView availableUnits = createPoolView(DEPENDENCY_UNIT, OTHER_UNIT);
+        Set<IInstallableUnit> rootUnits = Collections.singleton(ROOT_UNIT);
+        String key = ResolutionResultCache.computeKey(selectionContext, rootUnits, noRequirements, availableUnits);
+        MavenLoggerStub logger = new MavenLoggerStub(true);
+
+        ResolutionResultCache subject = new ResolutionResultCache(tempFolder.newFolder("cache"));
+        assertNull(subject.get(key, availableUnits, rootUnits, noUnits, logger));
+
+        subject.put(key, Arrays.asList(ROOT_UNIT, DEPENDENCY_UNIT), noUnits, logger);
+        Collection<IInstallableUnit> result = subject.get(key, availableUnits, rootUnits, noUnits, logger);
+
+        assertEquals(new HashSet<IInstallableUnit>(Arrays.asList(ROOT_UNIT, DEPENDENCY_UNIT)),
+                new HashSet<IInstallableUnit>(result));
+    }
+
+    @Test
+    public void testUnusedResultsArePruned() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+        File unusedResult = new File(cacheDir, "unused.txt");
+        unusedResult.createNewFile();
+        unusedResult.setLastModified(System.currentTimeMillis()
+                - (ResolutionResultCache.MAX_UNUSED_DAYS + 1) * 24L * 60 * 60 * 1000);
+        File recentResult = new File(cacheDir, "recent.txt");
+        recentResult.createNewFile();
+
+        ResolutionResultCache subject = new ResolutionResultCache(cacheDir);
+        subject.put("new", Arrays.asList(ROOT_UNIT), noUnits, new MavenLoggerStub(true));
+
+        assertFalse(unusedResult.exists());
+        assertTrue(recentResult.exists());
+        assertTrue(new File(cacheDir, "new.txt").exists());
+    }
+
+    private static InstallableUnitPoolView createPoolView(IInstallableUnit... repositoryUnits) {
+        InstallableUnitPool pool = new InstallableUnitPool(Collections.<IInstallableUnit> emptySet(),
+                Arrays.asList(repositoryUnits));
+        return new InstallableUnitPoolView(pool, Collections.singleton("root"), Collections.singleton(ROOT_UNIT));
+    }
+}
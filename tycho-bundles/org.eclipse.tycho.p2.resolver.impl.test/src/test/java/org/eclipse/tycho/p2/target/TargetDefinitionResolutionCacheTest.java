@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.target;
+
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.MAIN_BUNDLE;
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.REFERENCED_BUNDLE_V1;
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.TARGET_FEATURE;
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.bagEquals;
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.definitionWith;
+import static org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.versionedIdsOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.tycho.p2.impl.resolver.ResolutionResultCache;
+import org.eclipse.tycho.p2.impl.test.MavenLoggerStub;
+import org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.LocationStub;
+import org.eclipse.tycho.p2.target.TargetDefinitionResolverTest.TestRepositories;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition;
+import org.eclipse.tycho.test.util.P2Context;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TargetDefinitionResolutionCacheTest {
+
+    @Rule
+    public P2Context p2Context = new P2Context();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private MavenLoggerStub logger = new MavenLoggerStub();
+
+    private List<Map<String, String>> environments = Collections
+            .singletonList((Map<String, String>) new HashMap<String, String>());
+
+    @Test
+    public void testSameDefinitionIsResolvedOnce() throws Exception {
+        TargetDefinitionResolutionCache subject = new TargetDefinitionResolutionCache(null);
+
+        TargetPlatformContent first = subject.resolveContent(definitionWith(new LocationStub(
+                TestRepositories.V1_AND_V2, TARGET_FEATURE)), environments, p2Context.getAgent(), logger);
+        TargetPlatformContent second = subject.resolveContent(definitionWith(new LocationStub(
+                TestRepositories.V1_AND_V2, TARGET_FEATURE)), environments, p2Context.getAgent(), logger);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testDifferentDefinitionsAreResolvedSeparately() throws Exception {
+        TargetDefinitionResolutionCache subject = new TargetDefinitionResolutionCache(null);
+
+        TargetPlatformContent first = subject.resolveContent(definitionWith(new LocationStub(
+                TestRepositories.V1_AND_V2, TARGET_FEATURE)), environments, p2Context.getAgent(), logger);
+        TargetPlatformContent second = subject.resolveContent(definitionWith(new LocationStub(
+                TestRepositories.V1_AND_V2, REFERENCED_BUNDLE_V1)), environments, p2Context.getAgent(), logger);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testKeyDependsOnEnvironments() {
+        TargetDefinition definition = definitionWith(new LocationStub(TestRepositories.V1, MAIN_BUNDLE));
+        Map<String, String> linux = new HashMap<String, String>();
+        linux.put("osgi.os", "linux");
+
+        List<Map<String, String>> otherEnvironments = new ArrayList<Map<String, String>>();
+        otherEnvironments.add(linux);
+
+        assertEquals(TargetDefinitionResolutionCache.computeKey(definition, environments),
+                TargetDefinitionResolutionCache.computeKey(definition, environments));
+        assertFalse(TargetDefinitionResolutionCache.computeKey(definition, environments).equals(
+                TargetDefinitionResolutionCache.computeKey(definition, otherEnvironments)));
+    }
+
+    @Test
+    public void testResultIsReadFromDiskCache() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+        TargetDefinition definition = definitionWith(new LocationStub(TestRepositories.V1_AND_V2, TARGET_FEATURE));
+
+        TargetPlatformContent resolved = new TargetDefinitionResolutionCache(cacheDir).resolveContent(definition,
+                environments, p2Context.getAgent(), logger);
+        assertTrue(new File(cacheDir, TargetDefinitionResolutionCache.computeKey(definition, environments) + ".xml")
+                .isFile());
+
+        TargetPlatformContent cached = new TargetDefinitionResolutionCache(cacheDir).resolveContent(definition,
+                environments, p2Context.getAgent(), logger);
+
+        assertNotSame(resolved, cached);
+        assertThat(versionedIdsOf(cached), bagEquals(versionedIdsOf(resolved)));
+        assertEquals(resolved.getArtifactRepositoryLocations(), cached.getArtifactRepositoryLocations());
+    }
+
+    @Test
+    public void testUnusedResultsArePruned() throws Exception {
+        File cacheDir = tempFolder.newFolder("cache");
+        File unusedResult = new File(cacheDir, "unused.xml");
+        unusedResult.createNewFile();
+        unusedResult.setLastModified(System.currentTimeMillis()
+                - (ResolutionResultCache.MAX_UNUSED_DAYS + 1) * 24L * 60 * 60 * 1000);
+        File recentResult = new File(cacheDir, "recent.xml");
+        recentResult.createNewFile();
+        TargetDefinition definition = definitionWith(new LocationStub(TestRepositories.V1_AND_V2, TARGET_FEATURE));
+
+        new TargetDefinitionResolutionCache(cacheDir).resolveContent(definition, environments, p2Context.getAgent(),
+                logger);
+
+        assertFalse(unusedResult.exists());
+        assertTrue(recentResult.exists());
+        assertTrue(new File(cacheDir, TargetDefinitionResolutionCache.computeKey(definition, environments) + ".xml")
+                .isFile());
+    }
+}
@@ -45,6 +45,17 @@ public class FileServerServlet extends AbstractMonitorServlet {
 
         addUri(req);
 
+        // support conditional requests like a real web server
+        long lastModified = (file.lastModified() / 1000) * 1000;
+        String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(file.length()) + "\"";
+        res.setDateHeader("Last-Modified", lastModified);
+        res.setHeader("ETag", etag);
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null ? ifNoneMatch.equals(etag) : req.getDateHeader("If-Modified-Since") >= lastModified) {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
         InputStream input = new FileInputStream(file);
         try {
             OutputStream output = res.getOutputStream();
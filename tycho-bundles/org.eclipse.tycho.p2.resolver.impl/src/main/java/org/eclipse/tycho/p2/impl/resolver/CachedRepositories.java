@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+
+/**
+ * The metadata and artifact repository loaded from one location.
+ */
+public final class CachedRepositories {
+
+    private final IMetadataRepository metadataRepository;
+
+    private final IArtifactRepository artifactRepository;
+
+    /**
+     * @param artifactRepository
+     *            the artifact repository, or <code>null</code> if it has not been loaded, e.g.
+     *            because a remote location is used offline
+     */
+    public CachedRepositories(IMetadataRepository metadataRepository, IArtifactRepository artifactRepository) {
+        this.metadataRepository = metadataRepository;
+        this.artifactRepository = artifactRepository;
+    }
+
+    public IMetadataRepository getMetadataRepository() {
+        return metadataRepository;
+    }
+
+    public IArtifactRepository getArtifactRepository() {
+        return artifactRepository;
+    }
+}
@@ -11,6 +11,7 @@
 package org.eclipse.tycho.p2.impl.resolver;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -18,11 +19,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.internal.p2.metadata.IRequiredCapability;
 import org.eclipse.equinox.internal.p2.metadata.RequiredCapability;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.IRequirement;
-import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.QueryUtil;
 import org.eclipse.tycho.core.facade.MavenLogger;
 import org.eclipse.tycho.p2.impl.Activator;
@@ -76,12 +77,9 @@ public class DependencyCollector extends ResolutionStrategy {
         // features/bundles included in included features (RequiredCapability.isVersionStrict is approximation of this)
 
         for (IRequirement req : iu.getRequirements()) {
-            IQueryResult<IInstallableUnit> matches = availableIUs.query(
-                    QueryUtil.createLatestQuery(QueryUtil.createMatchQuery(req.getMatches())), monitor);
-
-            if (!matches.isEmpty()) {
-                IInstallableUnit match = matches.iterator().next(); // can only be one
+            IInstallableUnit match = findLatestMatch(req, monitor);
 
+            if (match != null) {
                 if (immediate || isIncluded(iu, req, match)) {
                     result.add(match);
 
@@ -96,6 +94,34 @@ public class DependencyCollector extends ResolutionStrategy {
         }
     }
 
+    private IInstallableUnit findLatestMatch(IRequirement req, IProgressMonitor monitor) {
+        Iterator<IInstallableUnit> matches;
+        if (availableIUs instanceof InstallableUnitPoolView && req instanceof IRequiredCapability) {
+            // only look at the units providing the capability instead of evaluating the query on all units
+            IRequiredCapability capability = (IRequiredCapability) req;
+            matches = ((InstallableUnitPoolView) availableIUs).getUnitsProviding(capability.getNamespace(),
+                    capability.getName()).iterator();
+        } else {
+            matches = availableIUs.query(QueryUtil.createMatchQuery(req.getMatches()), monitor).iterator();
+        }
+
+        // same result as a latest query: the latest version of the first matching unit id
+        IInstallableUnit latest = null;
+        while (matches.hasNext()) {
+            IInstallableUnit candidate = matches.next();
+            if (!req.isMatch(candidate)) {
+                continue;
+            }
+            if (latest == null) {
+                latest = candidate;
+            } else if (latest.getId().equals(candidate.getId())
+                    && latest.getVersion().compareTo(candidate.getVersion()) < 0) {
+                latest = candidate;
+            }
+        }
+        return latest;
+    }
+
     private boolean isIncluded(IInstallableUnit iu, IRequirement req, IInstallableUnit match) {
         Set<String> includedIUs = FeatureDependenciesAction.getIncludedUIs(iu);
 
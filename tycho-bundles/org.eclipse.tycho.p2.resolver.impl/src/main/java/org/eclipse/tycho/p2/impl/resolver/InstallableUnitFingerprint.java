@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IInstallableUnitFragment;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+
+/**
+ * Computes hashes of the parts of installable units which are relevant for the resolution, i.e.
+ * everything except the artifacts, touchpoint data and (most) properties.
+ */
+public final class InstallableUnitFingerprint {
+
+    private InstallableUnitFingerprint() {
+    }
+
+    /**
+     * Returns a hash of the given units, independent of their order.
+     */
+    static String of(Collection<? extends IInstallableUnit> units) {
+        List<String> unitHashes = new ArrayList<String>(units.size());
+        for (IInstallableUnit unit : units) {
+            unitHashes.add(of(unit));
+        }
+        Collections.sort(unitHashes);
+
+        StringBuilder content = new StringBuilder(unitHashes.size() * 41);
+        for (String unitHash : unitHashes) {
+            content.append(unitHash).append('\n');
+        }
+        return sha1(content.toString());
+    }
+
+    static String of(IInstallableUnit unit) {
+        StringBuilder content = new StringBuilder();
+        content.append(unit.getClass().getName()).append('\n');
+        content.append(unit.getId()).append('/').append(unit.getVersion()).append('\n');
+        content.append("singleton:").append(unit.isSingleton()).append('\n');
+        content.append("filter:").append(unit.getFilter()).append('\n');
+        for (IProvidedCapability capability : unit.getProvidedCapabilities()) {
+            content.append("provides:").append(capability).append('\n');
+        }
+        for (IRequirement requirement : unit.getRequirements()) {
+            append(content, "requires:", requirement);
+        }
+        for (IRequirement requirement : unit.getMetaRequirements()) {
+            append(content, "metaRequires:", requirement);
+        }
+        if (unit instanceof IInstallableUnitFragment) {
+            for (IRequirement requirement : ((IInstallableUnitFragment) unit).getHost()) {
+                append(content, "host:", requirement);
+            }
+        }
+        return sha1(content.toString());
+    }
+
+    static void append(StringBuilder content, String prefix, IRequirement requirement) {
+        content.append(prefix).append(requirement).append(' ').append(requirement.getMin()).append(',')
+                .append(requirement.getMax()).append(',').append(requirement.isGreedy()).append(",filter:")
+                .append(requirement.getFilter()).append('\n');
+    }
+
+    /**
+     * Returns the SHA-1 hash of the given string as hex string.
+     */
+    public static String sha1(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+            StringBuilder result = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.IQueryable;
+
+/**
+ * Immutable, indexed set of the installable units from the target definitions and the p2
+ * repositories of a resolution context. The pool is built once and then re-used for the resolution
+ * of all projects and environments, so that the (possibly very many) units don't need to be
+ * collected and indexed again for every resolution.
+ *
+ * @see InstallableUnitPoolView
+ */
+@SuppressWarnings("restriction")
+public class InstallableUnitPool implements IQueryable<IInstallableUnit> {
+
+    private static final IInstallableUnit[] IU_ARRAY = new IInstallableUnit[0];
+
+    /** units from target definition content; these take precedence over repository units */
+    private final Set<IInstallableUnit> contentUnits;
+
+    /** units from p2 repositories */
+    private final Set<IInstallableUnit> repositoryUnits;
+
+    private final QueryableArray allUnits;
+
+    private final Map<String, List<IInstallableUnit>> unitsById = new HashMap<String, List<IInstallableUnit>>();
+
+    private final Map<String, List<IInstallableUnit>> unitsByCapability = new HashMap<String, List<IInstallableUnit>>();
+
+    private String fingerprint;
+
+    /**
+     * @param contentUnits
+     *            units from the target definition content
+     * @param repositoryUnits
+     *            units from p2 repositories; duplicates of content units are ignored
+     */
+    public InstallableUnitPool(Collection<? extends IInstallableUnit> contentUnits,
+            Collection<? extends IInstallableUnit> repositoryUnits) {
+        this.contentUnits = Collections.unmodifiableSet(new LinkedHashSet<IInstallableUnit>(contentUnits));
+
+        Set<IInstallableUnit> filteredRepositoryUnits = new LinkedHashSet<IInstallableUnit>();
+        for (IInstallableUnit unit : repositoryUnits) {
+            if (!this.contentUnits.contains(unit)) {
+                filteredRepositoryUnits.add(unit);
+            }
+        }
+        this.repositoryUnits = Collections.unmodifiableSet(filteredRepositoryUnits);
+
+        List<IInstallableUnit> units = new ArrayList<IInstallableUnit>(this.contentUnits.size()
+                + this.repositoryUnits.size());
+        units.addAll(this.contentUnits);
+        units.addAll(this.repositoryUnits);
+        this.allUnits = new QueryableArray(units.toArray(IU_ARRAY));
+
+        // the QueryableArray creates its indexes lazily and without synchronization; create them now,
+        // so that the pool can be queried concurrently by the threads resolving projects and environments
+        synchronized (allUnits) {
+            allUnits.getIndex(InstallableUnit.MEMBER_ID);
+            allUnits.getIndex(InstallableUnit.MEMBER_PROVIDED_CAPABILITIES);
+        }
+
+        for (IInstallableUnit unit : units) {
+            addToIndex(unitsById, unit.getId(), unit);
+            for (IProvidedCapability capability : unit.getProvidedCapabilities()) {
+                addToIndex(unitsByCapability, capabilityKey(capability.getNamespace(), capability.getName()), unit);
+            }
+        }
+    }
+
+    private static void addToIndex(Map<String, List<IInstallableUnit>> index, String key, IInstallableUnit unit) {
+        List<IInstallableUnit> units = index.get(key);
+        if (units == null) {
+            units = new ArrayList<IInstallableUnit>(1);
+            index.put(key, units);
+        }
+        units.add(unit);
+    }
+
+    private static String capabilityKey(String namespace, String name) {
+        return namespace + '/' + name;
+    }
+
+    public IQueryResult<IInstallableUnit> query(IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+        return allUnits.query(query, monitor);
+    }
+
+    /**
+     * Returns all units (content units first).
+     */
+    public List<IInstallableUnit> getUnits() {
+        List<IInstallableUnit> result = new ArrayList<IInstallableUnit>(contentUnits.size() + repositoryUnits.size());
+        result.addAll(contentUnits);
+        result.addAll(repositoryUnits);
+        return result;
+    }
+
+    public boolean contains(IInstallableUnit unit) {
+        return contentUnits.contains(unit) || repositoryUnits.contains(unit);
+    }
+
+    public boolean isContentUnit(IInstallableUnit unit) {
+        return contentUnits.contains(unit);
+    }
+
+    public List<IInstallableUnit> getUnitsById(String id) {
+        return unmodifiable(unitsById.get(id));
+    }
+
+    public List<IInstallableUnit> getUnitsProviding(String namespace, String name) {
+        return unmodifiable(unitsByCapability.get(capabilityKey(namespace, name)));
+    }
+
+    private static List<IInstallableUnit> unmodifiable(List<IInstallableUnit> units) {
+        if (units == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(units);
+    }
+
+    public int size() {
+        return contentUnits.size() + repositoryUnits.size();
+    }
+
+    /**
+     * Returns a hash of the content of this pool, which only changes if units are added, removed,
+     * or changed in a way relevant for the resolution.
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = InstallableUnitFingerprint.sha1("content:" + InstallableUnitFingerprint.of(contentUnits)
+                    + "\nrepositories:" + InstallableUnitFingerprint.of(repositoryUnits));
+        }
+        return fingerprint;
+    }
+}
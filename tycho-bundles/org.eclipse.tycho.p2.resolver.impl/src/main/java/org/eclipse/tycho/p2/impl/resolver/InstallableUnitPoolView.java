@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.CollectionResult;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.eclipse.equinox.p2.query.QueryUtil;
+
+/**
+ * The units available for the resolution of a project: a shared {@link InstallableUnitPool} with
+ * the units from the reactor and the local Maven repository on top. Repository units with the same
+ * id as a reactor unit are hidden, so that the reactor always takes precedence. This is a thin view,
+ * i.e. the units of the pool are neither copied nor indexed again.
+ */
+public class InstallableUnitPoolView implements IQueryable<IInstallableUnit> {
+
+    private final InstallableUnitPool pool;
+
+    private final Set<String> hiddenIds;
+
+    private final Set<IInstallableUnit> additionalUnits;
+
+    private final InstallableUnitPool additionalUnitsIndex;
+
+    private List<IInstallableUnit> allVisibleUnits;
+
+    private String fingerprint;
+
+    /**
+     * @param pool
+     *            the shared pool
+     * @param hiddenIds
+     *            ids of the reactor units; repository units of the pool with one of these ids are
+     *            not visible
+     * @param additionalUnits
+     *            units to be added to the pool; duplicates of units from the target definition
+     *            content are ignored
+     */
+    public InstallableUnitPoolView(InstallableUnitPool pool, Set<String> hiddenIds,
+            Collection<? extends IInstallableUnit> additionalUnits) {
+        this.pool = pool;
+        this.hiddenIds = hiddenIds;
+
+        Set<IInstallableUnit> units = new LinkedHashSet<IInstallableUnit>();
+        for (IInstallableUnit unit : additionalUnits) {
+            if (!pool.isContentUnit(unit)) {
+                units.add(unit);
+            }
+        }
+        this.additionalUnits = Collections.unmodifiableSet(units);
+        this.additionalUnitsIndex = new InstallableUnitPool(this.additionalUnits,
+                Collections.<IInstallableUnit> emptySet());
+    }
+
+    private boolean isVisible(IInstallableUnit poolUnit) {
+        if (pool.isContentUnit(poolUnit)) {
+            return true;
+        }
+        return !hiddenIds.contains(poolUnit.getId()) && !additionalUnits.contains(poolUnit);
+    }
+
+    public IQueryResult<IInstallableUnit> query(IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+        if (QueryUtil.isMatchQuery(query)) {
+            // match queries can be evaluated (with the help of the indexes) on both parts separately
+            Set<IInstallableUnit> result = new LinkedHashSet<IInstallableUnit>();
+            for (Iterator<IInstallableUnit> it = pool.query(query, monitor).iterator(); it.hasNext();) {
+                IInstallableUnit unit = it.next();
+                if (isVisible(unit)) {
+                    result.add(unit);
+                }
+            }
+            for (Iterator<IInstallableUnit> it = additionalUnitsIndex.query(query, monitor).iterator(); it
+                    .hasNext();) {
+                result.add(it.next());
+            }
+            return new CollectionResult<IInstallableUnit>(result);
+        }
+        return query.perform(getAllVisibleUnits().iterator());
+    }
+
+    private synchronized List<IInstallableUnit> getAllVisibleUnits() {
+        if (allVisibleUnits == null) {
+            List<IInstallableUnit> result = new ArrayList<IInstallableUnit>(pool.size() + additionalUnits.size());
+            for (IInstallableUnit unit : pool.getUnits()) {
+                if (isVisible(unit)) {
+                    result.add(unit);
+                }
+            }
+            result.addAll(additionalUnits);
+            allVisibleUnits = Collections.unmodifiableList(result);
+        }
+        return allVisibleUnits;
+    }
+
+    /**
+     * Returns the visible units with the given id.
+     */
+    public List<IInstallableUnit> getUnitsById(String id) {
+        return filter(pool.getUnitsById(id), additionalUnitsIndex.getUnitsById(id));
+    }
+
+    /**
+     * Returns the visible units which provide the given capability.
+     */
+    public List<IInstallableUnit> getUnitsProviding(String namespace, String name) {
+        return filter(pool.getUnitsProviding(namespace, name), additionalUnitsIndex.getUnitsProviding(namespace, name));
+    }
+
+    /**
+     * Returns a hash of the visible units, see {@link InstallableUnitPool#getFingerprint()}.
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            StringBuilder content = new StringBuilder();
+            content.append("pool:").append(pool.getFingerprint()).append('\n');
+            for (String hiddenId : new TreeSet<String>(hiddenIds)) {
+                content.append("hidden:").append(hiddenId).append('\n');
+            }
+            content.append("additional:").append(InstallableUnitFingerprint.of(additionalUnits)).append('\n');
+            fingerprint = InstallableUnitFingerprint.sha1(content.toString());
+        }
+        return fingerprint;
+    }
+
+    private List<IInstallableUnit> filter(List<IInstallableUnit> poolUnits, List<IInstallableUnit> additionalUnits) {
+        List<IInstallableUnit> result = new ArrayList<IInstallableUnit>(poolUnits.size() + additionalUnits.size());
+        for (IInstallableUnit unit : poolUnits) {
+            if (isVisible(unit)) {
+                result.add(unit);
+            }
+        }
+        result.addAll(additionalUnits);
+        return result;
+    }
+}
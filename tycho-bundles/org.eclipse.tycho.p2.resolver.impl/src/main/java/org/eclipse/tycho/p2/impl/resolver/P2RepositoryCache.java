@@ -12,6 +12,7 @@ package org.eclipse.tycho.p2.impl.resolver;
 
 import java.net.URI;
 
+import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 
@@ -29,4 +30,17 @@ public interface P2RepositoryCache {
     public void putRepository(URI location, IMetadataRepository metadataRepository,
             IArtifactRepository artifactRepository);
 
+    public interface RepositoryLoader {
+        CachedRepositories load(URI location) throws ProvisionException;
+    }
+
+    /**
+     * Returns the repositories at the given location, loading them with the given loader if they
+     * are not cached. Concurrent callers for the same location share a single load. The
+     * repositories are pinned in the cache, i.e. they are not evicted, as long as the owner is
+     * strongly reachable.
+     */
+    public CachedRepositories loadRepository(URI location, Object owner, RepositoryLoader loader)
+            throws ProvisionException;
+
 }
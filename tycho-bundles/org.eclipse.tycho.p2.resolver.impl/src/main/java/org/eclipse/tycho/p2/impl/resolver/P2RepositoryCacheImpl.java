@@ -10,49 +10,274 @@
  *******************************************************************************/
 package org.eclipse.tycho.p2.impl.resolver;
 
-import java.lang.ref.SoftReference;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.QueryUtil;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
 
+/**
+ * Cache shared by all resolution contexts of a provisioning agent. The repositories are held
+ * strongly, so that they are not garbage collected in the middle of a build. Instead, the cache
+ * is bounded by the total number of installable units in the cached metadata repositories: if the
+ * limit is exceeded, the least recently used repositories which are not pinned are evicted. The
+ * limit can be set with <code>-Dtycho.p2.repositoryCache.maxUnits</code>.
+ * <p>
+ * The cache may be accessed concurrently because reactor projects may be resolved concurrently.
+ * </p>
+ */
 public class P2RepositoryCacheImpl implements P2RepositoryCache {
 
-    private HashMap<URI, SoftReference<IArtifactRepository>> artifactRepositories = new HashMap<URI, SoftReference<IArtifactRepository>>();
+    public static final String PROP_MAX_UNITS = "tycho.p2.repositoryCache.maxUnits";
 
-    private HashMap<URI, SoftReference<IMetadataRepository>> metadataRepositories = new HashMap<URI, SoftReference<IMetadataRepository>>();
+    private static final long DEFAULT_MAX_UNITS = 500000;
+
+    private final long maxUnits;
+
+    private final ConcurrentMap<URI, Entry> repositories = new ConcurrentHashMap<URI, Entry>();
+
+    /** locations which have been evicted; loading them again counts as reload */
+    private final Set<URI> evictedLocations = Collections.synchronizedSet(new HashSet<URI>());
+
+    private final AtomicLong accessCounter = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong reloads = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Object evictionLock = new Object();
 
     private HashMap<String, TychoRepositoryIndex> indexes = new HashMap<String, TychoRepositoryIndex>();
 
-    public IArtifactRepository getArtifactRepository(URI uri) {
-        return dereference(artifactRepositories.get(uri));
+    public P2RepositoryCacheImpl() {
+        this(Long.getLong(PROP_MAX_UNITS, DEFAULT_MAX_UNITS).longValue());
     }
 
-    private <T> T dereference(SoftReference<T> reference) {
-        return reference != null ? reference.get() : null;
+    public P2RepositoryCacheImpl(long maxUnits) {
+        this.maxUnits = maxUnits;
     }
 
-    public IMetadataRepository getMetadataRepository(URI uri) {
-        return dereference(metadataRepositories.get(uri));
+    private static class Entry {
+        final FutureTask<CachedRepositories> loadTask;
+
+        /** the resolution contexts which use the repositories */
+        private final Map<Object, Boolean> owners = new WeakHashMap<Object, Boolean>();
+
+        volatile long lastAccess;
+
+        volatile long units;
+
+        Entry(Callable<CachedRepositories> loader) {
+            this.loadTask = new FutureTask<CachedRepositories>(loader);
+        }
+
+        synchronized void pin(Object owner) {
+            if (owner != null) {
+                owners.put(owner, Boolean.TRUE);
+            }
+        }
+
+        synchronized boolean isPinned() {
+            return !owners.isEmpty();
+        }
+
+        CachedRepositories getIfLoaded() {
+            if (!loadTask.isDone()) {
+                return null;
+            }
+            try {
+                return loadTask.get();
+            } catch (ExecutionException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
     }
 
-    public void putRepository(URI uri, IMetadataRepository metadataRepository, IArtifactRepository artifactRepository) {
-        if (metadataRepository != null) {
-            metadataRepositories.put(uri, new SoftReference<IMetadataRepository>(metadataRepository));
+    public CachedRepositories loadRepository(final URI location, Object owner, final RepositoryLoader loader)
+            throws ProvisionException {
+        Entry entry = repositories.get(location);
+        boolean load = false;
+        if (entry == null) {
+            Entry newEntry = new Entry(new Callable<CachedRepositories>() {
+                public CachedRepositories call() throws ProvisionException {
+                    return loader.load(location);
+                }
+            });
+            entry = repositories.putIfAbsent(location, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                load = true;
+            }
+        }
+        entry.pin(owner);
+        entry.lastAccess = accessCounter.incrementAndGet();
+
+        if (load) {
+            misses.incrementAndGet();
+            if (evictedLocations.remove(location)) {
+                reloads.incrementAndGet();
+            }
+            entry.loadTask.run();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        CachedRepositories result;
+        try {
+            result = entry.loadTask.get();
+        } catch (ExecutionException e) {
+            // the next caller will try again
+            repositories.remove(location, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof ProvisionException) {
+                throw (ProvisionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for repository " + location, e);
         }
 
-        if (artifactRepository != null) {
-            artifactRepositories.put(uri, new SoftReference<IArtifactRepository>(artifactRepository));
+        if (load) {
+            entry.units = countUnits(result.getMetadataRepository());
+            evictIfNecessary();
         }
+        return result;
+    }
+
+    private static long countUnits(IMetadataRepository repository) {
+        if (repository == null) {
+            return 0;
+        }
+        long count = 0;
+        Iterator<IInstallableUnit> units = repository.query(QueryUtil.createIUAnyQuery(), null).iterator();
+        while (units.hasNext()) {
+            units.next();
+            count++;
+        }
+        return count;
+    }
+
+    private void evictIfNecessary() {
+        synchronized (evictionLock) {
+            long totalUnits = 0;
+            List<Map.Entry<URI, Entry>> candidates = new ArrayList<Map.Entry<URI, Entry>>();
+            for (Map.Entry<URI, Entry> entry : repositories.entrySet()) {
+                totalUnits += entry.getValue().units;
+                if (entry.getValue().loadTask.isDone() && !entry.getValue().isPinned()) {
+                    candidates.add(entry);
+                }
+            }
+            if (totalUnits <= maxUnits) {
+                return;
+            }
+
+            Collections.sort(candidates, new Comparator<Map.Entry<URI, Entry>>() {
+                public int compare(Map.Entry<URI, Entry> left, Map.Entry<URI, Entry> right) {
+                    long leftAccess = left.getValue().lastAccess;
+                    long rightAccess = right.getValue().lastAccess;
+                    return leftAccess < rightAccess ? -1 : (leftAccess == rightAccess ? 0 : 1);
+                }
+            });
+            for (Map.Entry<URI, Entry> candidate : candidates) {
+                if (totalUnits <= maxUnits) {
+                    break;
+                }
+                if (repositories.remove(candidate.getKey(), candidate.getValue())) {
+                    totalUnits -= candidate.getValue().units;
+                    evictedLocations.add(candidate.getKey());
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public IArtifactRepository getArtifactRepository(URI uri) {
+        Entry entry = repositories.get(uri);
+        CachedRepositories cached = entry != null ? entry.getIfLoaded() : null;
+        return cached != null ? cached.getArtifactRepository() : null;
+    }
+
+    public IMetadataRepository getMetadataRepository(URI uri) {
+        Entry entry = repositories.get(uri);
+        CachedRepositories cached = entry != null ? entry.getIfLoaded() : null;
+        return cached != null ? cached.getMetadataRepository() : null;
+    }
+
+    public void putRepository(URI uri, IMetadataRepository metadataRepository, IArtifactRepository artifactRepository) {
+        final CachedRepositories cached = new CachedRepositories(metadataRepository, artifactRepository);
+        Entry entry = new Entry(new Callable<CachedRepositories>() {
+            public CachedRepositories call() {
+                return cached;
+            }
+        });
+        entry.loadTask.run();
+        entry.units = countUnits(metadataRepository);
+        entry.lastAccess = accessCounter.incrementAndGet();
+        repositories.put(uri, entry);
+        evictIfNecessary();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of loads of repositories which had been evicted before.
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "p2 repository cache: " + hits + " hits, " + misses + " misses, " + reloads + " reloads, "
+                + evictions + " evictions";
     }
 
-    public TychoRepositoryIndex getRepositoryIndex(String repositoryKey) {
+    public synchronized TychoRepositoryIndex getRepositoryIndex(String repositoryKey) {
         return indexes.get(repositoryKey);
     }
 
-    public void putRepositoryIndex(String repositoryKey, TychoRepositoryIndex index) {
+    public synchronized void putRepositoryIndex(String repositoryKey, TychoRepositoryIndex index) {
         indexes.put(repositoryKey, index);
     }
 }
@@ -21,6 +21,8 @@ import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.tycho.core.facade.MavenLogger;
 import org.eclipse.tycho.p2.impl.Activator;
 import org.eclipse.tycho.p2.resolver.facade.P2ResolverFactory;
+import org.eclipse.tycho.p2.resolver.facade.ResolutionContext;
+import org.eclipse.tycho.p2.target.TargetDefinitionResolutionCache;
 
 @SuppressWarnings("restriction")
 public class P2ResolverFactoryImpl implements P2ResolverFactory {
@@ -32,6 +34,10 @@ public class P2ResolverFactoryImpl implements P2ResolverFactory {
         return new ResolutionContextImpl(agent, localMavenRepositoryRoot, offline, disableP2Mirrors, logger);
     }
 
+    public ResolutionContextImpl createResolutionContext(ResolutionContext sharedContext, MavenLogger logger) {
+        return new ResolutionContextImpl((ResolutionContextImpl) sharedContext, logger);
+    }
+
     public P2ResolverImpl createResolver(MavenLogger logger) {
         return new P2ResolverImpl(logger);
     }
@@ -96,6 +102,23 @@ public class P2ResolverFactoryImpl implements P2ResolverFactory {
                 P2RepositoryCache tychoCache = new P2RepositoryCacheImpl();
                 agent.registerService(P2RepositoryCache.SERVICE_NAME, tychoCache);
 
+                // setup cache of resolved target definitions
+                agent.registerService(TargetDefinitionResolutionCache.SERVICE_NAME,
+                        TargetDefinitionResolutionCache.forLocalRepository(localMavenRepositoryRoot));
+
+                // setup cache of remote repository metadata, if enabled
+                RemoteMetadataRepositoryCache metadataCache = RemoteMetadataRepositoryCache.forLocalRepository(
+                        localMavenRepositoryRoot, offline);
+                if (metadataCache != null) {
+                    agent.registerService(RemoteMetadataRepositoryCache.SERVICE_NAME, metadataCache);
+                }
+
+                // setup cache of resolution results, if enabled
+                ResolutionResultCache resultCache = ResolutionResultCache.forLocalRepository(localMavenRepositoryRoot);
+                if (resultCache != null) {
+                    agent.registerService(ResolutionResultCache.SERVICE_NAME, resultCache);
+                }
+
                 agents.put(agentKey, agent);
             } catch (ProvisionException e) {
                 throw new RuntimeException(e);
@@ -17,6 +17,12 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
@@ -25,9 +31,11 @@ import org.eclipse.equinox.p2.metadata.IProvidedCapability;
 import org.eclipse.equinox.p2.metadata.IRequirement;
 import org.eclipse.equinox.p2.metadata.MetadataFactory;
 import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.query.IQueryable;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.spi.p2.publisher.PublisherHelper;
 import org.eclipse.tycho.core.facade.MavenLogger;
+import org.eclipse.tycho.core.facade.ThreadingUtils;
 import org.eclipse.tycho.p2.metadata.IArtifactFacade;
 import org.eclipse.tycho.p2.metadata.IReactorArtifactFacade;
 import org.eclipse.tycho.p2.resolver.facade.P2ResolutionResult;
@@ -41,6 +49,12 @@ public class P2ResolverImpl implements P2Resolver {
     // BundlesAction.CAPABILITY_NS_OSGI_BUNDLE
     private static final String CAPABILITY_NS_OSGI_BUNDLE = "osgi.bundle";
 
+    /**
+     * Number of threads used to resolve a project for its target environments. Defaults to 1, i.e.
+     * the environments are resolved one after another.
+     */
+    public static final String PROP_ENVIRONMENT_THREADS = "tycho.resolver.environmentThreads";
+
     private final MavenLogger logger;
 
     private final IProgressMonitor monitor;
@@ -63,15 +77,82 @@ public class P2ResolverImpl implements P2Resolver {
     public List<P2ResolutionResult> resolveProject(ResolutionContext context, File projectLocation) {
         this.context = (ResolutionContextImpl) context;
 
-        ArrayList<P2ResolutionResult> results = new ArrayList<P2ResolutionResult>();
+        // the available units are the same for all environments
+        this.context.assertNoDuplicateReactorUIs();
+        IQueryable<IInstallableUnit> availableIUs = this.context.gatherAvailableInstallableUnits(monitor);
+
+        List<Collection<IInstallableUnit>> states;
+        int threads = Math.min(ThreadingUtils.getThreads(PROP_ENVIRONMENT_THREADS, 1), environments.size());
+        if (threads > 1) {
+            states = resolveEnvironmentsInParallel(projectLocation, availableIUs, threads);
+        } else {
+            states = new ArrayList<Collection<IInstallableUnit>>(environments.size());
+            for (Map<String, String> properties : environments) {
+                states.add(resolveState(projectLocation, createProjectorResolutionStrategy(properties), availableIUs));
+            }
+        }
 
-        for (Map<String, String> properties : environments) {
-            results.add(resolveProject(projectLocation, new ProjectorResolutionStrategy(properties, logger)));
+        // the states of the environments mostly overlap, so their artifacts are downloaded at once
+        Set<IInstallableUnit> allUnits = new LinkedHashSet<IInstallableUnit>();
+        for (Collection<IInstallableUnit> state : states) {
+            allUnits.addAll(state);
         }
+        context.downloadArtifacts(allUnits);
+        registerArtifactRepository(projectLocation);
 
+        ArrayList<P2ResolutionResult> results = new ArrayList<P2ResolutionResult>(states.size());
+        for (Collection<IInstallableUnit> state : states) {
+            results.add(toResolutionResult(state));
+        }
         return results;
     }
 
+    private List<Collection<IInstallableUnit>> resolveEnvironmentsInParallel(final File projectLocation,
+            final IQueryable<IInstallableUnit> availableIUs, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                ThreadingUtils.newDaemonThreadFactory("tycho-resolver-environment-"));
+        try {
+            List<Future<Collection<IInstallableUnit>>> futures = new ArrayList<Future<Collection<IInstallableUnit>>>(
+                    environments.size());
+            for (final Map<String, String> properties : environments) {
+                futures.add(executor.submit(new Callable<Collection<IInstallableUnit>>() {
+                    public Collection<IInstallableUnit> call() {
+                        return resolveState(projectLocation, createProjectorResolutionStrategy(properties),
+                                availableIUs);
+                    }
+                }));
+            }
+
+            // collect in the order of the environments, so that the result is the same as for sequential resolution
+            List<Collection<IInstallableUnit>> results = new ArrayList<Collection<IInstallableUnit>>(futures.size());
+            for (Future<Collection<IInstallableUnit>> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while resolving " + projectLocation, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ProjectorResolutionStrategy createProjectorResolutionStrategy(Map<String, String> properties) {
+        ProjectorResolutionStrategy strategy = new ProjectorResolutionStrategy(properties, logger);
+        strategy.setResultCache(context.getResolutionResultCache());
+        return strategy;
+    }
+
     public P2ResolutionResult collectProjectDependencies(ResolutionContext context, File projectLocation) {
         this.context = (ResolutionContextImpl) context;
         return resolveProject(projectLocation, new DependencyCollector(logger));
@@ -94,23 +175,40 @@ public class P2ResolverImpl implements P2Resolver {
     protected P2ResolutionResult resolveProject(File projectLocation, ResolutionStrategy strategy) {
         context.assertNoDuplicateReactorUIs();
 
-        strategy.setAvailableInstallableUnits(context.gatherAvailableInstallableUnits(monitor));
+        return resolveProject(projectLocation, strategy, context.gatherAvailableInstallableUnits(monitor));
+    }
+
+    private P2ResolutionResult resolveProject(File projectLocation, ResolutionStrategy strategy,
+            IQueryable<IInstallableUnit> availableIUs) {
+        Collection<IInstallableUnit> newState = resolveState(projectLocation, strategy, availableIUs);
+
+        context.downloadArtifacts(newState);
+        registerArtifactRepository(projectLocation);
+
+        return toResolutionResult(newState);
+    }
+
+    /**
+     * Resolves the units of the project; may be called concurrently for different environments.
+     */
+    private Collection<IInstallableUnit> resolveState(File projectLocation, ResolutionStrategy strategy,
+            IQueryable<IInstallableUnit> availableIUs) {
+        strategy.setAvailableInstallableUnits(availableIUs);
         LinkedHashSet<IInstallableUnit> projectIUs = context.getReactorProjectIUs(projectLocation);
         strategy.setRootInstallableUnits(projectIUs);
         strategy.setAdditionalRequirements(additionalRequirements);
 
         Collection<IInstallableUnit> newState = strategy.resolve(monitor);
         context.warnAboutLocalIus(newState);
+        return newState;
+    }
 
-        context.downloadArtifacts(newState);
-
+    private void registerArtifactRepository(File projectLocation) {
         // TODO check if needed by all callers
         IArtifactRepository resolutionContextArtifactRepo = context.getSupplementaryArtifactRepository();
         RepositoryBlackboardKey blackboardKey = RepositoryBlackboardKey.forResolutionContextArtifacts(projectLocation);
         ArtifactRepositoryBlackboard.putRepository(blackboardKey, resolutionContextArtifactRepo);
         logger.debug("Registered artifact repository " + blackboardKey);
-
-        return toResolutionResult(newState);
     }
 
     private P2ResolutionResult toResolutionResult(Collection<IInstallableUnit> newState) {
@@ -221,5 +319,4 @@ public class P2ResolverImpl implements P2Resolver {
     public List<IRequirement> getAdditionalRequirements() {
         return additionalRequirements;
     }
-
 }
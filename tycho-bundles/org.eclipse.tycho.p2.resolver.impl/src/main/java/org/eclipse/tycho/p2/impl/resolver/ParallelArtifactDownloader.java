@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRequest;
+import org.eclipse.tycho.core.facade.ThreadingUtils;
+import org.eclipse.tycho.p2.impl.Activator;
+
+/**
+ * Executes artifact requests against a list of artifact repositories, optionally using several
+ * threads. Like in a composite repository, each request is performed by the first repository which
+ * contains the artifact, and the next repositories are only tried if that fails. The number of
+ * concurrent downloads from a single host is limited for all downloaders of the JVM, so that
+ * projects resolved in parallel don't multiply the load on a server.
+ */
+public class ParallelArtifactDownloader {
+
+    /**
+     * Number of threads used to download artifacts. Defaults to {@value #DEFAULT_THREADS}, i.e.
+     * parallel downloads need to be enabled explicitly.
+     */
+    public static final String PROP_THREADS = "tycho.download.threads";
+
+    /**
+     * Maximum number of concurrent downloads from the same host. Defaults to
+     * {@value #DEFAULT_THREADS_PER_HOST}.
+     */
+    public static final String PROP_THREADS_PER_HOST = "tycho.download.threadsPerHost";
+
+    static final int DEFAULT_THREADS = 1;
+
+    static final int DEFAULT_THREADS_PER_HOST = 2;
+
+    private final List<IArtifactRepository> repositories;
+
+    private final int threads;
+
+    private final int threadsPerHost;
+
+    /** download permits per host and limit; shared by all instances */
+    private static final Map<String, Semaphore> HOST_PERMITS = new HashMap<String, Semaphore>();
+
+    public ParallelArtifactDownloader(List<IArtifactRepository> repositories) {
+        this(repositories, ThreadingUtils.getThreads(PROP_THREADS, DEFAULT_THREADS), ThreadingUtils.getThreads(
+                PROP_THREADS_PER_HOST, DEFAULT_THREADS_PER_HOST));
+    }
+
+    public ParallelArtifactDownloader(List<IArtifactRepository> repositories, int threads, int threadsPerHost) {
+        this.repositories = repositories;
+        this.threads = threads;
+        this.threadsPerHost = threadsPerHost;
+    }
+
+    /**
+     * Performs the given requests. The returned status contains the problems of all failed
+     * requests, in the order of the requests.
+     */
+    public IStatus download(List<? extends IArtifactRequest> requests, final IProgressMonitor monitor) {
+        MultiStatus result = new MultiStatus(Activator.PLUGIN_ID, 0, "Error while downloading artifacts", null);
+        if (requests.isEmpty()) {
+            return result;
+        }
+
+        int poolSize = Math.min(threads, requests.size());
+        if (poolSize <= 1) {
+            for (IArtifactRequest request : requests) {
+                addProblem(result, perform(request, monitor));
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+                ThreadingUtils.newDaemonThreadFactory("tycho-download-"));
+        try {
+            List<Future<IStatus>> futures = new ArrayList<Future<IStatus>>(requests.size());
+            for (final IArtifactRequest request : requests) {
+                futures.add(executor.submit(new Callable<IStatus>() {
+                    public IStatus call() {
+                        return perform(request, monitor);
+                    }
+                }));
+            }
+            for (Future<IStatus> future : futures) {
+                try {
+                    addProblem(result, future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.add(new Status(IStatus.CANCEL, Activator.PLUGIN_ID, "Artifact download was interrupted", e));
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private static void addProblem(MultiStatus result, IStatus status) {
+        if (status != null && !status.isOK()) {
+            result.add(status);
+        }
+    }
+
+    IStatus perform(IArtifactRequest request, IProgressMonitor monitor) {
+        IStatus status = null;
+        for (IArtifactRepository repository : repositories) {
+            if (!repository.contains(request.getArtifactKey())) {
+                continue;
+            }
+
+            Semaphore permits = getHostPermits(repository.getLocation());
+            permits.acquireUninterruptibly();
+            try {
+                repository.getArtifacts(new IArtifactRequest[] { request }, monitor);
+            } finally {
+                permits.release();
+            }
+
+            status = request.getResult();
+            if (status != null && status.isOK()) {
+                break;
+            }
+        }
+        return status;
+    }
+
+    private Semaphore getHostPermits(URI location) {
+        String host = location != null && location.getHost() != null ? location.getHost() : "";
+        int limit = Math.max(1, threadsPerHost);
+        String key = host + '/' + limit;
+        synchronized (HOST_PERMITS) {
+            Semaphore permits = HOST_PERMITS.get(key);
+            if (permits == null) {
+                permits = new Semaphore(limit);
+                HOST_PERMITS.put(key, permits);
+            }
+            return permits;
+        }
+    }
+}
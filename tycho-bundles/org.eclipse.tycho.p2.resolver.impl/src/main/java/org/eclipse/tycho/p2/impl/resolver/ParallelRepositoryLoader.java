@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.tycho.core.facade.ThreadingUtils;
+
+/**
+ * Loads several repositories, optionally using several threads. The results are returned in the
+ * order of the locations, and failures are collected per location instead of aborting the other
+ * loads.
+ */
+public class ParallelRepositoryLoader {
+
+    /**
+     * Number of threads used to load repositories. Defaults to {@value #DEFAULT_THREADS}, i.e.
+     * repositories are loaded one after another.
+     */
+    public static final String PROP_THREADS = "tycho.p2.repositoryLoadThreads";
+
+    static final int DEFAULT_THREADS = 1;
+
+    public interface Loader<T> {
+        T load(URI location) throws ProvisionException;
+    }
+
+    private final int threads;
+
+    public ParallelRepositoryLoader() {
+        this(ThreadingUtils.getThreads(PROP_THREADS, DEFAULT_THREADS));
+    }
+
+    public ParallelRepositoryLoader(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Loads all locations with the given loader.
+     *
+     * @param failures
+     *            receives the exception of each location which could not be loaded, in the order of
+     *            the locations
+     * @return the loaded repositories in the order of the locations, with <code>null</code> for the
+     *         locations which could not be loaded
+     */
+    public <T> List<T> loadAll(List<URI> locations, final Loader<T> loader, Map<URI, Exception> failures) {
+        List<T> result = new ArrayList<T>(locations.size());
+        int poolSize = Math.min(threads, locations.size());
+        if (poolSize <= 1) {
+            for (URI location : locations) {
+                try {
+                    result.add(loader.load(location));
+                } catch (ProvisionException e) {
+                    failures.put(location, e);
+                    result.add(null);
+                } catch (RuntimeException e) {
+                    failures.put(location, e);
+                    result.add(null);
+                }
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+                ThreadingUtils.newDaemonThreadFactory("tycho-repository-loader-"));
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>(locations.size());
+            for (final URI location : locations) {
+                futures.add(executor.submit(new Callable<T>() {
+                    public T call() throws ProvisionException {
+                        return loader.load(location);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    failures.put(locations.get(i), (Exception) cause);
+                    result.add(null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading repositories", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+}
@@ -49,11 +49,21 @@ public class ProjectorResolutionStrategy extends ResolutionStrategy {
 
     private final MavenLogger logger;
 
+    private ResolutionResultCache resultCache;
+
     public ProjectorResolutionStrategy(Map<String, String> properties, MavenLogger logger) {
         this.properties = properties;
         this.logger = logger;
     }
 
+    /**
+     * @param resultCache
+     *            cache for the resolution results, or <code>null</code> to always resolve
+     */
+    public void setResultCache(ResolutionResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     // TODO share code with TargetDefionitionResolver
     public Collection<IInstallableUnit> resolve(IProgressMonitor monitor) {
         Map<String, String> newSelectionContext = SimplePlanner.createSelectionContext(properties);
@@ -67,6 +77,17 @@ public class ProjectorResolutionStrategy extends ResolutionStrategy {
 
         Set<IInstallableUnit> extraIUs = createAdditionalRequirementsIU();
 
+        String cacheKey = null;
+        if (resultCache != null && availableIUs instanceof InstallableUnitPoolView) {
+            InstallableUnitPoolView poolView = (InstallableUnitPoolView) availableIUs;
+            cacheKey = ResolutionResultCache.computeKey(newSelectionContext, rootIUs, additionalRequirements, poolView);
+            Collection<IInstallableUnit> cachedState = resultCache.get(cacheKey, poolView, rootIUs, extraIUs, logger);
+            if (cachedState != null) {
+                logger.debug("Using cached resolution result (" + cacheKey + ")");
+                return cachedState;
+            }
+        }
+
         Set<IInstallableUnit> rootWithExtraIUs = new LinkedHashSet<IInstallableUnit>();
         rootWithExtraIUs.addAll(rootIUs);
         rootWithExtraIUs.addAll(extraIUs);
@@ -109,6 +130,10 @@ public class ProjectorResolutionStrategy extends ResolutionStrategy {
 
         fixSWT(newState, newSelectionContext, monitor);
 
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, newState, extraIUs, logger);
+        }
+
         if (logger.isExtendedDebugEnabled()) {
             logger.debug("Resolved IUs:\n" + ResolverDebugUtils.toDebugString(newState, false));
         }
@@ -132,8 +157,15 @@ public class ProjectorResolutionStrategy extends ResolutionStrategy {
 
         IInstallableUnit swtFragment = null;
 
-        all_ius: for (Iterator<IInstallableUnit> iter = availableIUs.query(QueryUtil.ALL_UNITS, monitor).iterator(); iter
-                .hasNext();) {
+        Iterator<IInstallableUnit> candidates;
+        if (availableIUs instanceof InstallableUnitPoolView) {
+            candidates = ((InstallableUnitPoolView) availableIUs).getUnitsProviding("osgi.fragment", "org.eclipse.swt")
+                    .iterator();
+        } else {
+            candidates = availableIUs.query(QueryUtil.ALL_UNITS, monitor).iterator();
+        }
+
+        all_ius: for (Iterator<IInstallableUnit> iter = candidates; iter.hasNext();) {
             IInstallableUnit iu = iter.next();
             if (iu.getId().startsWith("org.eclipse.swt") && isApplicable(newSelectionContext, iu.getFilter())) {
                 for (IProvidedCapability provided : iu.getProvidedCapabilities()) {
@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.ICompositeRepository;
+import org.eclipse.equinox.p2.repository.IRepositoryReference;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.repository.metadata.spi.AbstractMetadataRepository;
+import org.eclipse.tycho.core.facade.MavenLogger;
+import org.eclipse.tycho.p2.maven.repository.xmlio.MetadataIO;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
+
+/**
+ * Persistent cache of the content of remote p2 metadata repositories. The units of a repository
+ * are stored in the local Maven repository together with the validators (ETag and Last-Modified)
+ * of the metadata files they have been read from. In subsequent builds, the files are revalidated
+ * with conditional requests, and if none of them has changed, the repository is read from the
+ * cache instead of being loaded and parsed by p2. In offline mode, cached content is used without
+ * revalidation.
+ * <p>
+ * The cache is enabled with <code>-Dtycho.p2.metadataCache=true</code>. Only http and https
+ * locations are cached.
+ * </p>
+ */
+public class RemoteMetadataRepositoryCache {
+
+    public static final String SERVICE_NAME = RemoteMetadataRepositoryCache.class.getName();
+
+    public static final String PROP_ENABLED = "tycho.p2.metadataCache";
+
+    public static final String DISK_CACHE_RELPATH = ".meta/p2-remote-metadata";
+
+    private static final String UNITS_FILE = "units.xml.gz";
+
+    private static final String VALIDATORS_FILE = "validators.properties";
+
+    private static final String[] SIMPLE_REPOSITORY_FILES = { "content.jar", "content.xml" };
+
+    private static final String[] COMPOSITE_REPOSITORY_FILES = { "compositeContent.jar", "compositeContent.xml" };
+
+    private static final String KEY_NAME = "name";
+
+    private static final String KEY_FILES = "files";
+
+    private static final String PREFIX_FILE = "file.";
+
+    private static final String SUFFIX_URL = ".url";
+
+    private static final String SUFFIX_ETAG = ".etag";
+
+    private static final String SUFFIX_LAST_MODIFIED = ".lastModified";
+
+    private static final String PREFIX_PROPERTY = "property.";
+
+    private static final String KEY_TIMESTAMP = PREFIX_PROPERTY + "p2.timestamp";
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private static final int TIMEOUT = 30 * 1000;
+
+    private final File cacheDir;
+
+    private final boolean offline;
+
+    public RemoteMetadataRepositoryCache(File cacheDir, boolean offline) {
+        this.cacheDir = cacheDir;
+        this.offline = offline;
+    }
+
+    /**
+     * Returns a cache in the given local Maven repository, or <code>null</code> if the cache has not
+     * been enabled via the system property {@value #PROP_ENABLED}.
+     */
+    public static RemoteMetadataRepositoryCache forLocalRepository(File localMavenRepositoryRoot, boolean offline) {
+        if (Boolean.parseBoolean(System.getProperty(PROP_ENABLED))) {
+            return new RemoteMetadataRepositoryCache(new File(localMavenRepositoryRoot, DISK_CACHE_RELPATH), offline);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the metadata repository at the given location, either from the cache or loaded with
+     * the given repository manager.
+     */
+    public IMetadataRepository loadRepository(URI location, IMetadataRepositoryManager manager,
+            IProgressMonitor monitor, MavenLogger logger) throws ProvisionException {
+        if (!isHttp(location)) {
+            return manager.loadRepository(location, monitor);
+        }
+
+        File entryDir = new File(cacheDir, InstallableUnitFingerprint.sha1(location.toString()));
+        Properties validators = readValidators(entryDir);
+        if (validators != null && (offline || isUpToDate(validators, logger))) {
+            IMetadataRepository cached = readRepository(location, entryDir, validators, logger);
+            if (cached != null) {
+                logger.debug("Using cached metadata of repository " + location);
+                return cached;
+            }
+        }
+
+        if (offline) {
+            return manager.loadRepository(location, monitor);
+        }
+
+        // the validators are taken before loading, so that they never claim newer content than the
+        // content which has actually been loaded
+        long loadStart = System.currentTimeMillis();
+        String[] simpleFile = null;
+        String[] compositeFile = null;
+        try {
+            simpleFile = getValidators(location, SIMPLE_REPOSITORY_FILES);
+            if (simpleFile == null) {
+                compositeFile = getValidators(location, COMPOSITE_REPOSITORY_FILES);
+            }
+        } catch (IOException e) {
+            logger.debug("Could not get validators of repository " + location + ": " + e.getMessage());
+        }
+
+        IMetadataRepository repository = manager.loadRepository(location, monitor);
+        String[] file = repository instanceof ICompositeRepository<?> ? compositeFile : simpleFile;
+        store(location, repository, file, loadStart, entryDir, validators, manager, monitor, logger);
+        return repository;
+    }
+
+    private static boolean isHttp(URI location) {
+        String scheme = location.getScheme();
+        return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    }
+
+    private static Properties readValidators(File entryDir) {
+        File file = new File(entryDir, VALIDATORS_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties validators = new Properties();
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                validators.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // malformed unicode escape in a corrupted file
+            return null;
+        }
+        return validators;
+    }
+
+    /**
+     * Returns <code>true</code> if the server reports all metadata files as not modified. Cache
+     * entries with corrupted validators are reported as outdated.
+     */
+    private static boolean isUpToDate(Properties validators, MavenLogger logger) {
+        try {
+            return isUpToDate(validators, Integer.parseInt(validators.getProperty(KEY_FILES, "0")), logger);
+        } catch (NumberFormatException e) {
+            logger.debug("Cached metadata is outdated: invalid validators " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isUpToDate(Properties validators, int files, MavenLogger logger) {
+        for (int i = 0; i < files; i++) {
+            String prefix = PREFIX_FILE + i;
+            String url = validators.getProperty(prefix + SUFFIX_URL);
+            try {
+                HttpURLConnection connection = openConnection(url);
+                try {
+                    String etag = validators.getProperty(prefix + SUFFIX_ETAG);
+                    if (etag != null) {
+                        connection.setRequestProperty("If-None-Match", etag);
+                    }
+                    String lastModified = validators.getProperty(prefix + SUFFIX_LAST_MODIFIED);
+                    if (lastModified != null) {
+                        connection.setIfModifiedSince(Long.parseLong(lastModified));
+                    }
+                    if (connection.getResponseCode() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        logger.debug("Cached metadata is outdated: " + url + " has been modified");
+                        return false;
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                logger.debug("Could not revalidate cached metadata of " + url + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return files > 0;
+    }
+
+    private static HttpURLConnection openConnection(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            throw new IOException("Not an http location: " + url);
+        }
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setUseCaches(false);
+        return (HttpURLConnection) connection;
+    }
+
+    private static IMetadataRepository readRepository(URI location, File entryDir, Properties validators,
+            MavenLogger logger) {
+        File unitsFile = new File(entryDir, UNITS_FILE);
+        try {
+            InputStream is = new GZIPInputStream(new FileInputStream(unitsFile));
+            try {
+                Set<IInstallableUnit> units = new MetadataIO().readXML(is);
+                Map<String, String> properties = new HashMap<String, String>();
+                for (Object key : validators.keySet()) {
+                    String name = (String) key;
+                    if (name.startsWith(PREFIX_PROPERTY)) {
+                        properties.put(name.substring(PREFIX_PROPERTY.length()), validators.getProperty(name));
+                    }
+                }
+                return new CachedMetadataRepository(location, validators.getProperty(KEY_NAME), properties, units);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read cached metadata " + unitsFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the units of the loaded repository.
+     *
+     * @param file
+     *            the validators of the metadata file of the repository, taken before it was loaded
+     * @param loadStart
+     *            the time before the repository was loaded
+     */
+    private void store(URI location, IMetadataRepository repository, String[] file, long loadStart,
+            File entryDir, Properties oldValidators, IMetadataRepositoryManager manager, IProgressMonitor monitor,
+            MavenLogger logger) {
+        Properties validators = new Properties();
+        try {
+            List<String[]> files = new ArrayList<String[]>();
+            if (file == null) {
+                logger.debug("Not caching metadata of repository " + location
+                        + ": the server does not provide validators for the metadata file");
+                return;
+            }
+            files.add(file);
+            if (!collectChildMetadataFiles(repository, loadStart, manager, monitor, files)) {
+                logger.debug("Not caching metadata of repository " + location
+                        + ": the metadata files of the children have no validators or have changed while loading");
+                return;
+            }
+            for (int i = 0; i < files.size(); i++) {
+                String[] metadataFile = files.get(i);
+                validators.setProperty(PREFIX_FILE + i + SUFFIX_URL, metadataFile[0]);
+                if (metadataFile[1] != null) {
+                    validators.setProperty(PREFIX_FILE + i + SUFFIX_ETAG, metadataFile[1]);
+                }
+                if (metadataFile[2] != null) {
+                    validators.setProperty(PREFIX_FILE + i + SUFFIX_LAST_MODIFIED, metadataFile[2]);
+                }
+            }
+            validators.setProperty(KEY_FILES, Integer.toString(files.size()));
+        } catch (IOException e) {
+            logger.debug("Not caching metadata of repository " + location + ": " + e.getMessage());
+            return;
+        } catch (ProvisionException e) {
+            logger.debug("Not caching metadata of repository " + location + ": " + e.getMessage());
+            return;
+        }
+        if (repository.getName() != null) {
+            validators.setProperty(KEY_NAME, repository.getName());
+        }
+        for (Map.Entry<String, String> property : repository.getProperties().entrySet()) {
+            validators.setProperty(PREFIX_PROPERTY + property.getKey(), property.getValue());
+        }
+
+        File unitsFile = new File(entryDir, UNITS_FILE);
+        File validatorsFile = new File(entryDir, VALIDATORS_FILE);
+        File tempUnitsFile = null;
+        File tempValidatorsFile = null;
+
+        // e.g. after a server side copy, the files have changed but the content has not; the
+        // timestamp of a composite repository does not cover its children
+        String timestamp = validators.getProperty(KEY_TIMESTAMP);
+        boolean unitsUnchanged = !(repository instanceof ICompositeRepository<?>) && timestamp != null
+                && oldValidators != null
+                && timestamp.equals(oldValidators.getProperty(KEY_TIMESTAMP)) && unitsFile.isFile();
+        try {
+            entryDir.mkdirs();
+            OutputStream os;
+            if (!unitsUnchanged) {
+                Set<IInstallableUnit> units = new LinkedHashSet<IInstallableUnit>(repository.query(
+                        QueryUtil.createIUAnyQuery(), monitor).toUnmodifiableSet());
+                tempUnitsFile = File.createTempFile(UNITS_FILE, TEMP_FILE_SUFFIX, entryDir);
+                os = new GZIPOutputStream(new FileOutputStream(tempUnitsFile));
+                try {
+                    new MetadataIO().writeXML(units, os);
+                } finally {
+                    os.close();
+                }
+            }
+            tempValidatorsFile = File.createTempFile(VALIDATORS_FILE, TEMP_FILE_SUFFIX, entryDir);
+            os = new FileOutputStream(tempValidatorsFile);
+            try {
+                validators.store(os, null);
+            } finally {
+                os.close();
+            }
+
+            // publish atomically so that concurrent builds never read partially written files; the
+            // validators are published last because they mark the entry as complete
+            validatorsFile.delete();
+            if (!unitsUnchanged) {
+                RepositoryFileLock.replace(tempUnitsFile, unitsFile);
+            }
+            RepositoryFileLock.replace(tempValidatorsFile, validatorsFile);
+        } catch (IOException e) {
+            if (tempUnitsFile != null) {
+                tempUnitsFile.delete();
+            }
+            if (tempValidatorsFile != null) {
+                tempValidatorsFile.delete();
+            }
+            logger.warn("Could not store metadata of repository " + location + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collects the metadata files (url, ETag, Last-Modified) of the children of a composite
+     * repository, recursively. The children are only known after loading, so their validators can
+     * only be taken afterwards. Returns <code>false</code> unless the server reports each file as
+     * unmodified since the start of the load.
+     */
+    private static boolean collectChildMetadataFiles(IMetadataRepository repository, long loadStart,
+            IMetadataRepositoryManager manager, IProgressMonitor monitor, List<String[]> files) throws IOException,
+            ProvisionException {
+        if (!(repository instanceof ICompositeRepository<?>)) {
+            return true;
+        }
+        for (URI child : ((ICompositeRepository<?>) repository).getChildren()) {
+            if (!isHttp(child)) {
+                return false;
+            }
+            IMetadataRepository childRepository = manager.loadRepository(child, monitor);
+            boolean composite = childRepository instanceof ICompositeRepository<?>;
+            String[] file = getValidators(child, composite ? COMPOSITE_REPOSITORY_FILES : SIMPLE_REPOSITORY_FILES);
+            if (file == null || !isModifiedBefore(file, loadStart)) {
+                return false;
+            }
+            files.add(file);
+            if (!collectChildMetadataFiles(childRepository, loadStart, manager, monitor, files)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the Last-Modified date of the file is before the given local
+     * time. The date is compared with the server's clock, using the Date of the response.
+     */
+    private static boolean isModifiedBefore(String[] file, long localTime) {
+        if (file[2] == null || file[3] == null) {
+            return false;
+        }
+        try {
+            long serverTime = Long.parseLong(file[3]) - (System.currentTimeMillis() - localTime);
+            // HTTP dates have a resolution of one second
+            return Long.parseLong(file[2]) < serverTime - 1000;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the validators of the first of the given files which exists at the location, in the
+     * same order in which p2 looks for them. The result contains the url, the ETag, the
+     * Last-Modified date, and the Date of the response.
+     */
+    private static String[] getValidators(URI location, String[] candidates) throws IOException {
+        String base = location.toString();
+        if (!base.endsWith("/")) {
+            base += "/";
+        }
+        for (String candidate : candidates) {
+            String url = base + candidate;
+            HttpURLConnection connection = openConnection(url);
+            try {
+                connection.setRequestMethod("HEAD");
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    continue;
+                }
+                String etag = connection.getHeaderField("ETag");
+                long lastModified = connection.getLastModified();
+                if (etag == null && lastModified == 0) {
+                    return null;
+                }
+                long date = connection.getDate();
+                return new String[] { url, etag, lastModified != 0 ? Long.toString(lastModified) : null,
+                        date != 0 ? Long.toString(date) : null };
+            } finally {
+                connection.disconnect();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read-only repository with the units read from the cache.
+     */
+    private static class CachedMetadataRepository extends AbstractMetadataRepository {
+
+        private static final String REPOSITORY_TYPE = CachedMetadataRepository.class.getName();
+
+        private final Collection<IInstallableUnit> units;
+
+        CachedMetadataRepository(URI location, String name, Map<String, String> properties,
+                Collection<IInstallableUnit> units) {
+            super(null, name, REPOSITORY_TYPE, "1", location, null, null, properties);
+            this.units = units;
+        }
+
+        @Override
+        public void initialize(RepositoryState state) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean isModifiable() {
+            return false;
+        }
+
+        public IQueryResult<IInstallableUnit> query(IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+            return query.perform(units.iterator());
+        }
+
+        public Collection<IRepositoryReference> getReferences() {
+            return Collections.emptyList();
+        }
+    }
+}
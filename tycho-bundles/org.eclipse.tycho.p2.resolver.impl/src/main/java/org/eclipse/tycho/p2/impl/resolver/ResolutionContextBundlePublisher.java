@@ -14,6 +14,8 @@ import java.io.File;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.AssertionFailedException;
@@ -47,6 +49,12 @@ public class ResolutionContextBundlePublisher {
     private final MavenLogger logger;
     private final PublishedBundlesArtifactRepository publishedArtifacts;
 
+    /**
+     * Results of previous publisher runs, so that an artifact is only published once even if it is
+     * a POM dependency of several projects. Contains <code>null</code> values for non-bundles.
+     */
+    private final Map<File, IInstallableUnit> publishedUnits = new HashMap<File, IInstallableUnit>();
+
     public ResolutionContextBundlePublisher(File localMavenRepositoryRoot, MavenLogger logger) {
         this.publishedArtifacts = new PublishedBundlesArtifactRepository(localMavenRepositoryRoot);
         this.logger = logger;
@@ -91,6 +99,18 @@ public class ResolutionContextBundlePublisher {
             return null;
         }
 
+        synchronized (publishedUnits) {
+            File location = mavenArtifact.getLocation();
+            if (publishedUnits.containsKey(location)) {
+                return publishedUnits.get(location);
+            }
+            IInstallableUnit publishedIU = publishBundle(mavenArtifact);
+            publishedUnits.put(location, publishedIU);
+            return publishedIU;
+        }
+    }
+
+    private IInstallableUnit publishBundle(IArtifactFacade mavenArtifact) {
         PublisherRun publisherRun = new PublisherRun(mavenArtifact);
         IStatus status = publisherRun.execute();
 
@@ -12,7 +12,6 @@
 package org.eclipse.tycho.p2.impl.resolver;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
@@ -24,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -38,7 +38,6 @@ import org.eclipse.core.runtime.URIUtil;
 import org.eclipse.equinox.internal.p2.artifact.repository.CompositeArtifactRepository;
 import org.eclipse.equinox.internal.p2.artifact.repository.simple.SimpleArtifactRepository;
 import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
-import org.eclipse.equinox.internal.p2.director.QueryableArray;
 import org.eclipse.equinox.internal.p2.repository.Transport;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.core.ProvisionException;
@@ -48,13 +47,13 @@ import org.eclipse.equinox.p2.metadata.VersionedId;
 import org.eclipse.equinox.p2.publisher.PublisherInfo;
 import org.eclipse.equinox.p2.publisher.PublisherResult;
 import org.eclipse.equinox.p2.publisher.actions.JREAction;
+import org.eclipse.equinox.p2.query.CollectionResult;
 import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.IQueryable;
 import org.eclipse.equinox.p2.query.QueryUtil;
 import org.eclipse.equinox.p2.repository.IRepository;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
 import org.eclipse.equinox.p2.repository.artifact.IArtifactRepositoryManager;
-import org.eclipse.equinox.p2.repository.artifact.IArtifactRequest;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
 import org.eclipse.equinox.p2.repository.spi.AbstractRepository;
@@ -74,6 +73,7 @@ import org.eclipse.tycho.p2.repository.LocalRepositoryReader;
 import org.eclipse.tycho.p2.repository.RepositoryReader;
 import org.eclipse.tycho.p2.repository.TychoRepositoryIndex;
 import org.eclipse.tycho.p2.resolver.facade.ResolutionContext;
+import org.eclipse.tycho.p2.target.TargetDefinitionResolutionCache;
 import org.eclipse.tycho.p2.target.TargetDefinitionResolver;
 import org.eclipse.tycho.p2.target.TargetPlatformContent;
 import org.eclipse.tycho.p2.target.facade.TargetDefinition;
@@ -101,8 +101,15 @@ public class ResolutionContextImpl implements ResolutionContext {
     /** maven local repository as P2 IMetadataRepository */
     private final LocalMetadataRepository localMetadataRepository;
 
-    ResolutionContextImpl(IProvisioningAgent agent, File localMavenRepositoryRoot, boolean offline,
+    /**
+     * The shared context extended by this context, or <code>null</code>. The content of the shared
+     * context must no longer be modified once it is extended.
+     */
+    private final ResolutionContextImpl parent;
+
+    ResolutionContextImpl(IProvisioningAgent agent, final File localMavenRepositoryRoot, boolean offline,
             boolean disableP2Mirrors, MavenLogger logger) {
+        this.parent = null;
         this.agent = agent;
         this.logger = logger;
         this.monitor = new LoggingProgressMonitor(logger);
@@ -133,22 +140,27 @@ public class ResolutionContextImpl implements ResolutionContext {
         // setup p2 views of maven local repository
         URI uri = localMavenRepositoryRoot.toURI();
 
-        LocalArtifactRepository localRepository = (LocalArtifactRepository) repositoryCache.getArtifactRepository(uri);
-        LocalMetadataRepository localMetadataRepository = (LocalMetadataRepository) repositoryCache
-                .getMetadataRepository(uri);
-
-        if (localRepository == null || localMetadataRepository == null) {
-            RepositoryReader contentLocator = new LocalRepositoryReader(localMavenRepositoryRoot);
-            TychoRepositoryIndex artifactsIndex = FileBasedTychoRepositoryIndex.createRepositoryIndex(
-                    localMavenRepositoryRoot, FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH);
-            TychoRepositoryIndex metadataIndex = FileBasedTychoRepositoryIndex.createRepositoryIndex(
-                    localMavenRepositoryRoot, FileBasedTychoRepositoryIndex.METADATA_INDEX_RELPATH);
-
-            localRepository = new LocalArtifactRepository(localMavenRepositoryRoot, artifactsIndex, contentLocator);
-            localMetadataRepository = new LocalMetadataRepository(uri, metadataIndex, contentLocator);
-
-            repositoryCache.putRepository(uri, localMetadataRepository, localRepository);
+        CachedRepositories localRepositories;
+        try {
+            localRepositories = repositoryCache.loadRepository(uri, this, new P2RepositoryCache.RepositoryLoader() {
+                public CachedRepositories load(URI location) {
+                    RepositoryReader contentLocator = new LocalRepositoryReader(localMavenRepositoryRoot);
+                    TychoRepositoryIndex artifactsIndex = FileBasedTychoRepositoryIndex.createRepositoryIndex(
+                            localMavenRepositoryRoot, FileBasedTychoRepositoryIndex.ARTIFACTS_INDEX_RELPATH);
+                    TychoRepositoryIndex metadataIndex = FileBasedTychoRepositoryIndex.createRepositoryIndex(
+                            localMavenRepositoryRoot, FileBasedTychoRepositoryIndex.METADATA_INDEX_RELPATH);
+
+                    return new CachedRepositories(new LocalMetadataRepository(location, metadataIndex,
+                            contentLocator), new LocalArtifactRepository(localMavenRepositoryRoot, artifactsIndex,
+                            contentLocator));
+                }
+            });
+        } catch (ProvisionException e) {
+            throw new RuntimeException(e);
         }
+        LocalArtifactRepository localRepository = (LocalArtifactRepository) localRepositories.getArtifactRepository();
+        LocalMetadataRepository localMetadataRepository = (LocalMetadataRepository) localRepositories
+                .getMetadataRepository();
 
         metadataRepositories.add(localMetadataRepository);
 
@@ -156,6 +168,26 @@ public class ResolutionContextImpl implements ResolutionContext {
         this.localRepository = localRepository;
     }
 
+    /**
+     * Creates a context which sees all content of the given shared context, plus the content added
+     * to the new context. Since the expensive parts (reactor artifacts, p2 repositories, target
+     * definitions) are typically added to the shared context, creating such a context is cheap.
+     */
+    ResolutionContextImpl(ResolutionContextImpl parent, MavenLogger logger) {
+        this.parent = parent;
+        this.agent = parent.agent;
+        this.logger = logger;
+        this.monitor = new LoggingProgressMonitor(logger);
+        this.metadataRepositoryManager = parent.metadataRepositoryManager;
+        this.artifactRepositoryManager = parent.artifactRepositoryManager;
+        this.repositoryCache = parent.repositoryCache;
+        this.offline = parent.offline;
+        this.disableP2Mirrors = parent.disableP2Mirrors;
+        this.bundlesPublisher = parent.bundlesPublisher;
+        this.localRepository = parent.localRepository;
+        this.localMetadataRepository = parent.localMetadataRepository;
+    }
+
     // ---------------------------------------------------------------------
 
     private Map<ClassifiedLocation, Set<IInstallableUnit>> reactorProjectIUs = new HashMap<ClassifiedLocation, Set<IInstallableUnit>>();
@@ -199,13 +231,9 @@ public class ResolutionContextImpl implements ResolutionContext {
     }
 
     private Set<IInstallableUnit> readUnits(IArtifactFacade p2MetadataFile) throws IOException {
-        FileInputStream inputStream = new FileInputStream(p2MetadataFile.getLocation());
-        try {
-            MetadataIO io = new MetadataIO();
-            return io.readXML(inputStream);
-        } finally {
-            inputStream.close();
-        }
+        // the metadata of a dependency is typically read by all projects which depend on it
+        MetadataIO io = new MetadataIO();
+        return io.readXML(p2MetadataFile.getLocation());
     }
 
     void addMavenArtifact(ClassifiedLocation key, IArtifactFacade artifact, Set<IInstallableUnit> units) {
@@ -251,45 +279,91 @@ public class ResolutionContextImpl implements ResolutionContext {
      */
     private final List<IArtifactRepository> artifactRepositories = new ArrayList<IArtifactRepository>();
 
+    private final ParallelRepositoryLoader repositoryLoader = new ParallelRepositoryLoader();
+
     public void addP2Repository(URI location) {
-        IMetadataRepository metadataRepository = null;
-        IArtifactRepository artifactRepository = null;
-
-        // check metadata cache, first
-        metadataRepository = (IMetadataRepository) repositoryCache.getMetadataRepository(location);
-        artifactRepository = (IArtifactRepository) repositoryCache.getArtifactRepository(location);
-        if (metadataRepository != null && (offline || artifactRepository != null)) {
-            // cache hit
-            metadataRepositories.add(metadataRepository);
-            if (artifactRepository != null) {
-                artifactRepositories.add(artifactRepository);
-            }
-            logger.info("Adding repository (cached) " + location.toASCIIString());
-            return;
-        }
+        invalidateInstallableUnitPool();
 
         try {
-            metadataRepository = metadataRepositoryManager.loadRepository(location, monitor);
-            metadataRepositories.add(metadataRepository);
+            addLoadedRepositories(location, loadP2Repository(location));
+        } catch (ProvisionException e) {
+            throw new RuntimeException(e);
+        }
+        logRepositoryCacheStatistics();
+    }
 
-            if (!offline || URIUtil.isFileURI(location)) {
-                artifactRepository = artifactRepositoryManager.loadRepository(location, monitor);
-                artifactRepositories.add(artifactRepository);
+    public Map<URI, Exception> addP2Repositories(List<URI> locations) {
+        invalidateInstallableUnitPool();
 
-                forceSingleThreadedDownload(artifactRepository);
-                if (disableP2Mirrors) {
-                    forceMirrorsDisabled(artifactRepository);
-                }
+        Map<URI, Exception> failures = new LinkedHashMap<URI, Exception>();
+        List<CachedRepositories> results = repositoryLoader.loadAll(locations,
+                new ParallelRepositoryLoader.Loader<CachedRepositories>() {
+                    public CachedRepositories load(URI location) throws ProvisionException {
+                        return loadP2Repository(location);
+                    }
+                }, failures);
+
+        // add in the configured order, which determines the order in which artifacts are looked up
+        for (int i = 0; i < locations.size(); i++) {
+            if (results.get(i) != null) {
+                addLoadedRepositories(locations.get(i), results.get(i));
             }
+        }
+        logRepositoryCacheStatistics();
+        return failures;
+    }
 
-            repositoryCache.putRepository(location, metadataRepository, artifactRepository);
+    private void addLoadedRepositories(URI location, CachedRepositories repositories) {
+        metadataRepositories.add(repositories.getMetadataRepository());
+        if (repositories.getArtifactRepository() != null) {
+            artifactRepositories.add(repositories.getArtifactRepository());
+        }
+    }
 
-            // processPartialIUs( metadataRepository, artifactRepository );
-        } catch (ProvisionException e) {
-            throw new RuntimeException(e);
+    private void logRepositoryCacheStatistics() {
+        if (logger.isDebugEnabled()) {
+            logger.debug(repositoryCache.toString());
         }
     }
 
+    /**
+     * Loads the repositories at the given location. May be called concurrently.
+     */
+    private CachedRepositories loadP2Repository(URI location) throws ProvisionException {
+        // the cache is shared between the contexts of concurrently resolved projects, and makes sure
+        // that each repository is only loaded once
+        final boolean[] loaded = new boolean[1];
+        CachedRepositories repositories = repositoryCache.loadRepository(location, this,
+                new P2RepositoryCache.RepositoryLoader() {
+                    public CachedRepositories load(URI location) throws ProvisionException {
+                        loaded[0] = true;
+                        IMetadataRepository metadataRepository;
+                        RemoteMetadataRepositoryCache metadataCache = getRemoteMetadataCache();
+                        if (metadataCache != null) {
+                            metadataRepository = metadataCache.loadRepository(location, metadataRepositoryManager,
+                                    monitor, logger);
+                        } else {
+                            metadataRepository = metadataRepositoryManager.loadRepository(location, monitor);
+                        }
+
+                        IArtifactRepository artifactRepository = null;
+                        if (!offline || URIUtil.isFileURI(location)) {
+                            artifactRepository = artifactRepositoryManager.loadRepository(location, monitor);
+
+                            forceSingleThreadedDownload(artifactRepository);
+                            if (disableP2Mirrors) {
+                                forceMirrorsDisabled(artifactRepository);
+                            }
+                        }
+                        return new CachedRepositories(metadataRepository, artifactRepository);
+                    }
+                });
+        if (!loaded[0]) {
+            logger.info("Adding repository (cached) " + location.toASCIIString());
+        }
+        return repositories;
+    }
+
     protected void forceSingleThreadedDownload(IArtifactRepository artifactRepository) {
         try {
             if (artifactRepository instanceof SimpleArtifactRepository) {
@@ -337,10 +411,35 @@ public class ResolutionContextImpl implements ResolutionContext {
     // TODO have other target platform content contributors also add to this list
     private List<TargetPlatformContent> content = new ArrayList<TargetPlatformContent>();
 
+    /**
+     * Returns the cache for remote repository metadata, or <code>null</code> if it is not enabled.
+     */
+    private RemoteMetadataRepositoryCache getRemoteMetadataCache() {
+        return (RemoteMetadataRepositoryCache) agent.getService(RemoteMetadataRepositoryCache.SERVICE_NAME);
+    }
+
+    /**
+     * Returns the cache for resolution results, or <code>null</code> if it is not enabled.
+     */
+    ResolutionResultCache getResolutionResultCache() {
+        return (ResolutionResultCache) agent.getService(ResolutionResultCache.SERVICE_NAME);
+    }
+
     public void addTargetDefinition(TargetDefinition definition, List<Map<String, String>> environments)
             throws TargetDefinitionSyntaxException, TargetDefinitionResolutionException {
-        TargetDefinitionResolver resolver = new TargetDefinitionResolver(environments, agent, logger);
-        content.add(resolver.resolveContent(definition));
+        invalidateInstallableUnitPool();
+        synchronized (this) {
+            contentArtifactRepositories = null;
+        }
+
+        TargetDefinitionResolutionCache cache = (TargetDefinitionResolutionCache) agent
+                .getService(TargetDefinitionResolutionCache.SERVICE_NAME);
+        if (cache != null) {
+            content.add(cache.resolveContent(definition, environments, agent, logger));
+        } else {
+            TargetDefinitionResolver resolver = new TargetDefinitionResolver(environments, agent, logger);
+            content.add(resolver.resolveContent(definition));
+        }
     }
 
     // --------------------------------------------------------------------------------
@@ -404,45 +503,109 @@ public class ResolutionContextImpl implements ResolutionContext {
 
     // -------------------------------------------------------------------------
 
+    /** indexed units from target definitions and p2 repositories; built on demand */
+    private InstallableUnitPool installableUnitPool;
+
+    private synchronized void invalidateInstallableUnitPool() {
+        installableUnitPool = null;
+    }
+
     public IQueryable<IInstallableUnit> gatherAvailableInstallableUnits(IProgressMonitor monitor) {
-        Set<IInstallableUnit> result = new LinkedHashSet<IInstallableUnit>();
+        SubMonitor sub = SubMonitor.convert(monitor, 300);
+        InstallableUnitPool pool = getInstallableUnitPool(sub.newChild(200));
+
+        Set<String> reactorIds = new HashSet<String>();
+        collectReactorInstallableUnitIds(reactorIds);
 
-        for (TargetPlatformContent contentPart : content) {
-            result.addAll(contentPart.getUnits());
+        Set<IInstallableUnit> additionalUnits = new LinkedHashSet<IInstallableUnit>();
+        collectMavenInstallableUnits(additionalUnits);
+
+        // the local repository changes during the build, so it is not part of the (shared) pool
+        IQueryResult<IInstallableUnit> localUnits = queryAllUnits(localMetadataRepository, sub.newChild(100));
+        for (Iterator<IInstallableUnit> it = localUnits.iterator(); it.hasNext();) {
+            IInstallableUnit iu = it.next();
+            if (isAvailableRepositoryUnit(iu)) {
+                additionalUnits.add(iu);
+            }
         }
 
-        result.addAll(mavenInstallableUnits.keySet());
+        for (IInstallableUnit iu : createJREIUs()) {
+            if (!pool.contains(iu)) {
+                additionalUnits.add(iu);
+            }
+        }
+        sub.done();
+        return new InstallableUnitPoolView(pool, reactorIds, additionalUnits);
+    }
+
+    /**
+     * Returns the indexed units from the target definitions and the p2 repositories of this
+     * context. The pool is only built once and re-used for all subsequent resolutions; contexts
+     * which don't add own target definitions or repositories re-use the pool of the shared context.
+     */
+    private synchronized InstallableUnitPool getInstallableUnitPool(IProgressMonitor monitor) {
+        if (installableUnitPool == null) {
+            if (parent != null && content.isEmpty() && metadataRepositories.isEmpty()) {
+                installableUnitPool = parent.getInstallableUnitPool(monitor);
+            } else {
+                installableUnitPool = createInstallableUnitPool(monitor);
+            }
+        }
+        return installableUnitPool;
+    }
+
+    private InstallableUnitPool createInstallableUnitPool(IProgressMonitor monitor) {
+        List<IInstallableUnit> contentUnits = new ArrayList<IInstallableUnit>();
+        for (TargetPlatformContent contentPart : getAllContent()) {
+            contentUnits.addAll(contentPart.getUnits());
+        }
 
-        SubMonitor sub = SubMonitor.convert(monitor, metadataRepositories.size() * 200);
-        for (IMetadataRepository repository : metadataRepositories) {
+        List<IInstallableUnit> repositoryUnits = new ArrayList<IInstallableUnit>();
+        List<IMetadataRepository> allMetadataRepositories = getAllMetadataRepositories();
+        SubMonitor sub = SubMonitor.convert(monitor, allMetadataRepositories.size() * 100);
+        for (IMetadataRepository repository : allMetadataRepositories) {
+            if (repository == localMetadataRepository) {
+                continue;
+            }
             IQueryResult<IInstallableUnit> matches = repository.query(QueryUtil.ALL_UNITS, sub.newChild(100));
             for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
                 IInstallableUnit iu = it.next();
-
                 if (isPartialIU(iu)) {
                     logger.debug("PARTIAL IU: " + iu);
                     continue;
                 }
-
-                if (!isReactorInstallableUnit(iu)) {
-                    if (!reactorInstallableUnitIds.contains(iu.getId())) {
-                        result.add(iu);
-                    } else {
-                        // this produces too much noise in STDOUT
-//                        logger.debug( "External IU " + iu + " from repository " + repository.getLocation()
-//                            + " has the same id as reactor project. External IU is ignored." );
-                    }
-                }
+                // units with the same id as reactor units are hidden by the InstallableUnitPoolView
+                repositoryUnits.add(iu);
             }
         }
-        result.addAll(createJREIUs());
         sub.done();
-        // this is a real shame
-        return new QueryableArray(result.toArray(new IInstallableUnit[result.size()]));
+        return new InstallableUnitPool(contentUnits, repositoryUnits);
+    }
+
+    private boolean isAvailableRepositoryUnit(IInstallableUnit iu) {
+        if (isPartialIU(iu)) {
+            logger.debug("PARTIAL IU: " + iu);
+            return false;
+        }
+        // external units with the same id as a reactor project are ignored
+        return !isReactorInstallableUnit(iu) && !isReactorInstallableUnitId(iu.getId());
+    }
+
+    private IQueryResult<IInstallableUnit> queryAllUnits(IMetadataRepository repository, IProgressMonitor monitor) {
+        if (repository == localMetadataRepository) {
+            synchronized (localRepository) {
+                // copy the result because the repository may be modified by other projects
+                return new CollectionResult<IInstallableUnit>(repository.query(QueryUtil.ALL_UNITS, monitor).toSet());
+            }
+        }
+        return repository.query(QueryUtil.ALL_UNITS, monitor);
     }
 
     public void warnAboutLocalIus(Collection<IInstallableUnit> usedIus) {
-        final Set<IInstallableUnit> localIUs = localMetadataRepository.query(QueryUtil.ALL_UNITS, null).toSet();
+        final Set<IInstallableUnit> localIUs;
+        synchronized (localRepository) {
+            localIUs = localMetadataRepository.query(QueryUtil.ALL_UNITS, null).toSet();
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("The following units are part of the target platform because they have been installed to the local repository:");
             for (IInstallableUnit unit : localIUs) {
@@ -463,7 +626,62 @@ public class ResolutionContextImpl implements ResolutionContext {
     }
 
     private boolean isReactorInstallableUnit(IInstallableUnit iu) {
-        return mavenInstallableUnits.get(iu) instanceof IReactorArtifactFacade;
+        return getMavenArtifact(iu) instanceof IReactorArtifactFacade;
+    }
+
+    private boolean isReactorInstallableUnitId(String id) {
+        return reactorInstallableUnitIds.contains(id) || (parent != null && parent.isReactorInstallableUnitId(id));
+    }
+
+    private void collectReactorInstallableUnitIds(Set<String> result) {
+        if (parent != null) {
+            parent.collectReactorInstallableUnitIds(result);
+        }
+        result.addAll(reactorInstallableUnitIds);
+    }
+
+    private void collectMavenInstallableUnits(Set<IInstallableUnit> result) {
+        if (parent != null) {
+            parent.collectMavenInstallableUnits(result);
+        }
+        result.addAll(mavenInstallableUnits.keySet());
+    }
+
+    private List<TargetPlatformContent> getAllContent() {
+        if (parent == null) {
+            return content;
+        }
+        List<TargetPlatformContent> result = new ArrayList<TargetPlatformContent>(parent.getAllContent());
+        result.addAll(content);
+        return result;
+    }
+
+    private List<IMetadataRepository> getAllMetadataRepositories() {
+        if (parent == null) {
+            return metadataRepositories;
+        }
+        List<IMetadataRepository> result = new ArrayList<IMetadataRepository>(parent.getAllMetadataRepositories());
+        result.addAll(metadataRepositories);
+        return result;
+    }
+
+    private List<IArtifactRepository> getAllArtifactRepositories() {
+        if (parent == null) {
+            return artifactRepositories;
+        }
+        List<IArtifactRepository> result = new ArrayList<IArtifactRepository>(parent.getAllArtifactRepositories());
+        result.addAll(artifactRepositories);
+        return result;
+    }
+
+    private Map<ClassifiedLocation, Set<IInstallableUnit>> getAllReactorProjectIUs() {
+        if (parent == null) {
+            return reactorProjectIUs;
+        }
+        Map<ClassifiedLocation, Set<IInstallableUnit>> result = new HashMap<ClassifiedLocation, Set<IInstallableUnit>>(
+                parent.getAllReactorProjectIUs());
+        result.putAll(reactorProjectIUs);
+        return result;
     }
 
     /**
@@ -479,14 +697,33 @@ public class ResolutionContextImpl implements ResolutionContext {
 
     // -------------------------------------------------------------------------------
 
-    private static final IArtifactRequest[] ARTIFACT_REQUEST_ARRAY = new IArtifactRequest[0];
-
     private final IMetadataRepositoryManager metadataRepositoryManager;
 
     private final IArtifactRepositoryManager artifactRepositoryManager;
 
     private final P2RepositoryCache repositoryCache;
 
+    /** artifact repositories of the target definitions; loaded on first download */
+    private List<IArtifactRepository> contentArtifactRepositories;
+
+    private synchronized List<IArtifactRepository> getContentArtifactRepositories() {
+        if (contentArtifactRepositories == null) {
+            List<IArtifactRepository> result = new ArrayList<IArtifactRepository>();
+            for (TargetPlatformContent contentPart : getAllContent()) {
+                Collection<URI> repos = contentPart.getArtifactRepositoryLocations();
+                for (URI repo : repos) {
+                    try {
+                        result.add(artifactRepositoryManager.loadRepository(repo, monitor));
+                    } catch (ProvisionException e) {
+                        logger.warn("Could not load artifact repository " + repo + ": " + e.getMessage());
+                    }
+                }
+            }
+            contentArtifactRepositories = result;
+        }
+        return contentArtifactRepositories;
+    }
+
     public void downloadArtifacts(Collection<IInstallableUnit> newState) {
         List<MavenMirrorRequest> requests = new ArrayList<MavenMirrorRequest>();
         for (IInstallableUnit iu : newState) {
@@ -499,32 +736,30 @@ public class ResolutionContextImpl implements ResolutionContext {
             }
         }
 
-        CompositeArtifactRepository allArtifactRepositories = CompositeArtifactRepository.createMemoryComposite(agent);
-        for (IArtifactRepository artifactRepository : artifactRepositories) {
-            allArtifactRepositories.addChild(artifactRepository.getLocation());
-        }
-        for (TargetPlatformContent contentPart : content) {
-            Collection<URI> repos = contentPart.getArtifactRepositoryLocations();
-            for (URI repo : repos) {
-                allArtifactRepositories.addChild(repo);
-            }
-        }
+        List<IArtifactRepository> allArtifactRepositories = new ArrayList<IArtifactRepository>(
+                getAllArtifactRepositories());
+        allArtifactRepositories.addAll(getContentArtifactRepositories());
 
-        IStatus result = allArtifactRepositories.getArtifacts(requests.toArray(ARTIFACT_REQUEST_ARRAY), monitor);
+        // the local repository is safe for concurrent downloads; files are written to a temporary location first
+        IStatus result = new ParallelArtifactDownloader(allArtifactRepositories).download(requests, monitor);
         if (!result.isOK()) {
             throw new RuntimeException(StatusTool.collectProblems(result), result.getException()); // TODO find root exception - the MultiStatus probably doesn't have one
         }
         requests = filterCompletedRequests(requests);
 
-        localRepository.save();
-        localMetadataRepository.save();
-
-        // check for locally installed artifacts, which are not available from any remote repo
-        // TODO do this before downloading? (see enhancement request 342808)
-        for (Iterator<MavenMirrorRequest> iter = requests.iterator(); iter.hasNext();) {
-            MavenMirrorRequest request = iter.next();
-            if (localRepository.contains(request.getArtifactKey())) {
-                iter.remove();
+        // the p2 views of the local Maven repository are shared by all (possibly concurrently resolved) projects
+        synchronized (localRepository) {
+            // write the index once for all downloaded artifacts
+            localRepository.save();
+            localMetadataRepository.save();
+
+            // check for locally installed artifacts, which are not available from any remote repo
+            // TODO do this before downloading? (see enhancement request 342808)
+            for (Iterator<MavenMirrorRequest> iter = requests.iterator(); iter.hasNext();) {
+                MavenMirrorRequest request = iter.next();
+                if (localRepository.contains(request.getArtifactKey())) {
+                    iter.remove();
+                }
             }
         }
 
@@ -554,7 +789,7 @@ public class ResolutionContextImpl implements ResolutionContext {
         Map<IInstallableUnit, Set<File>> reactorUIs = new HashMap<IInstallableUnit, Set<File>>();
         Map<IInstallableUnit, Set<File>> duplicateReactorUIs = new HashMap<IInstallableUnit, Set<File>>();
 
-        for (Map.Entry<ClassifiedLocation, Set<IInstallableUnit>> entry : reactorProjectIUs.entrySet()) {
+        for (Map.Entry<ClassifiedLocation, Set<IInstallableUnit>> entry : getAllReactorProjectIUs().entrySet()) {
             for (IInstallableUnit iu : entry.getValue()) {
                 Set<File> locations = reactorUIs.get(iu);
                 if (locations == null) {
@@ -577,7 +812,7 @@ public class ResolutionContextImpl implements ResolutionContext {
         LinkedHashSet<IInstallableUnit> ius = new LinkedHashSet<IInstallableUnit>();
         boolean projectExists = false;
 
-        for (Map.Entry<ClassifiedLocation, Set<IInstallableUnit>> entry : reactorProjectIUs.entrySet()) {
+        for (Map.Entry<ClassifiedLocation, Set<IInstallableUnit>> entry : getAllReactorProjectIUs().entrySet()) {
             if (projectRoot.equals(entry.getKey().getLocation())) {
                 ius.addAll(entry.getValue());
                 projectExists = true;
@@ -590,11 +825,17 @@ public class ResolutionContextImpl implements ResolutionContext {
     }
 
     public IArtifactFacade getMavenArtifact(IInstallableUnit iu) {
-        return mavenInstallableUnits.get(iu);
+        IArtifactFacade artifact = mavenInstallableUnits.get(iu);
+        if (artifact == null && parent != null) {
+            artifact = parent.getMavenArtifact(iu);
+        }
+        return artifact;
     }
 
     public File getLocalArtifactFile(IArtifactKey key) {
-        return localRepository.getArtifactFile(key);
+        synchronized (localRepository) {
+            return localRepository.getArtifactFile(key);
+        }
     }
 
     protected Transport getTransport() {
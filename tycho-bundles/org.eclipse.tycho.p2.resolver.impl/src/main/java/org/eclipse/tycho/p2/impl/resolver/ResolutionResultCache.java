@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.impl.resolver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.tycho.core.facade.MavenLogger;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
+
+/**
+ * Persistent cache of the results of the {@link ProjectorResolutionStrategy}. The results are
+ * stored in the local Maven repository, keyed by a hash of all inputs of the resolution: the root
+ * units, the additional requirements, the selection context, and the content of the available
+ * units. If none of these has changed, the slicer and the SAT solver are skipped.
+ * <p>
+ * The cache is enabled with <code>-Dtycho.resolver.resultCache=true</code>. Results which have not
+ * been used for {@value #MAX_UNUSED_DAYS} days are deleted when the cache is first written to in a
+ * build.
+ * </p>
+ */
+public class ResolutionResultCache {
+
+    public static final String SERVICE_NAME = ResolutionResultCache.class.getName();
+
+    public static final String PROP_ENABLED = "tycho.resolver.resultCache";
+
+    public static final String DISK_CACHE_RELPATH = ".meta/p2-resolution-results";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String RESULT_FILE_SUFFIX = ".txt";
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    public static final int MAX_UNUSED_DAYS = 30;
+
+    private static final long MAX_UNUSED_MILLIS = MAX_UNUSED_DAYS * 24L * 60 * 60 * 1000;
+
+    /** temporary files of crashed builds are deleted after this time */
+    private static final long MAX_TEMP_FILE_AGE_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Marks that the result contained the extra unit with the additional requirements. This unit is
+     * created anew for every resolution, so it cannot be stored with id and version.
+     */
+    private static final String EXTRA_UNITS_MARKER = "#extra";
+
+    private final File cacheDir;
+
+    private boolean pruned;
+
+    public ResolutionResultCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns a cache in the given local Maven repository, or <code>null</code> if the cache has not
+     * been enabled via the system property {@value #PROP_ENABLED}.
+     */
+    public static ResolutionResultCache forLocalRepository(File localMavenRepositoryRoot) {
+        if (Boolean.parseBoolean(System.getProperty(PROP_ENABLED))) {
+            return new ResolutionResultCache(new File(localMavenRepositoryRoot, DISK_CACHE_RELPATH));
+        }
+        return null;
+    }
+
+    static String computeKey(Map<String, String> selectionContext, Collection<IInstallableUnit> rootIUs,
+            List<IRequirement> additionalRequirements, InstallableUnitPoolView availableIUs) {
+        StringBuilder content = new StringBuilder();
+        content.append("selectionContext:").append(new TreeMap<String, String>(selectionContext)).append('\n');
+        content.append("roots:").append(InstallableUnitFingerprint.of(rootIUs)).append('\n');
+        for (IRequirement requirement : additionalRequirements) {
+            InstallableUnitFingerprint.append(content, "additional:", requirement);
+        }
+        content.append("available:").append(availableIUs.getFingerprint()).append('\n');
+        return InstallableUnitFingerprint.sha1(content.toString());
+    }
+
+    /**
+     * Returns the cached resolution result, or <code>null</code> if there is none.
+     *
+     * @param extraIUs
+     *            the units which have been created for the additional requirements
+     */
+    public Collection<IInstallableUnit> get(String key, InstallableUnitPoolView availableIUs,
+            Collection<IInstallableUnit> rootIUs, Collection<IInstallableUnit> extraIUs, MavenLogger logger) {
+        File file = getCacheFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        List<IInstallableUnit> result = new ArrayList<IInstallableUnit>();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() == 0) {
+                        continue;
+                    }
+                    if (EXTRA_UNITS_MARKER.equals(line)) {
+                        result.addAll(extraIUs);
+                        continue;
+                    }
+                    int separator = line.indexOf(' ');
+                    IInstallableUnit unit = separator > 0 ? findUnit(line.substring(0, separator),
+                            line.substring(separator + 1), availableIUs, rootIUs) : null;
+                    if (unit == null) {
+                        // only possible in case of a hash collision or a manually edited file
+                        logger.debug("Ignoring cached resolution result " + file + ": unit " + line
+                                + " is not available");
+                        return null;
+                    }
+                    result.add(unit);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read cached resolution result " + file + ": " + e.getMessage());
+            return null;
+        }
+        // results are pruned by the time of their last use
+        file.setLastModified(System.currentTimeMillis());
+        return result;
+    }
+
+    private static IInstallableUnit findUnit(String id, String version, InstallableUnitPoolView availableIUs,
+            Collection<IInstallableUnit> rootIUs) {
+        for (IInstallableUnit unit : rootIUs) {
+            if (id.equals(unit.getId()) && version.equals(unit.getVersion().toString())) {
+                return unit;
+            }
+        }
+        for (IInstallableUnit unit : availableIUs.getUnitsById(id)) {
+            if (version.equals(unit.getVersion().toString())) {
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    public void put(String key, Collection<IInstallableUnit> result, Collection<IInstallableUnit> extraIUs,
+            MavenLogger logger) {
+        pruneOnce();
+
+        File file = getCacheFile(key);
+        File tempFile = null;
+        try {
+            cacheDir.mkdirs();
+            tempFile = File.createTempFile(key, TEMP_FILE_SUFFIX, cacheDir);
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING);
+            try {
+                boolean containsExtraIUs = false;
+                for (IInstallableUnit unit : result) {
+                    if (extraIUs.contains(unit)) {
+                        containsExtraIUs = true;
+                    } else {
+                        writer.write(unit.getId() + " " + unit.getVersion() + "\n");
+                    }
+                }
+                if (containsExtraIUs) {
+                    writer.write(EXTRA_UNITS_MARKER + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+
+            // publish atomically so that concurrent builds never read partially written files
+            RepositoryFileLock.replace(tempFile, file);
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            logger.warn("Could not store resolution result " + file + ": " + e.getMessage());
+        }
+    }
+
+    private File getCacheFile(String key) {
+        return new File(cacheDir, key + RESULT_FILE_SUFFIX);
+    }
+
+    private synchronized void pruneOnce() {
+        if (pruned) {
+            return;
+        }
+        pruned = true;
+        prune(cacheDir, RESULT_FILE_SUFFIX);
+    }
+
+    /**
+     * Deletes the files with the given suffix which have not been used (i.e. modified) for
+     * {@value #MAX_UNUSED_DAYS} days, and the temporary files left behind by crashed builds. Also
+     * used for other caches in the local Maven repository with the same pruning policy.
+     */
+    public static void prune(File cacheDir, String resultFileSuffix) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            String name = file.getName();
+            long age = now - file.lastModified();
+            if ((name.endsWith(resultFileSuffix) && age > MAX_UNUSED_MILLIS)
+                    || (name.endsWith(TEMP_FILE_SUFFIX) && age > MAX_TEMP_FILE_AGE_MILLIS)) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.target;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.tycho.core.facade.MavenLogger;
+import org.eclipse.tycho.p2.impl.resolver.InstallableUnitFingerprint;
+import org.eclipse.tycho.p2.impl.resolver.ResolutionResultCache;
+import org.eclipse.tycho.p2.maven.repository.xmlio.MetadataIO;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition.InstallableUnitLocation;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition.Location;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition.Repository;
+import org.eclipse.tycho.p2.target.facade.TargetDefinition.Unit;
+import org.eclipse.tycho.p2.target.facade.TargetDefinitionResolutionException;
+import org.eclipse.tycho.p2.target.facade.TargetDefinitionSyntaxException;
+
+/**
+ * Cache of resolved target definitions. Target definitions with the same content, resolved for the
+ * same environments, are only resolved once per provisioning agent.
+ * <p>
+ * If enabled with <code>-Dtycho.targetDefinition.diskCache=true</code>, resolution results are
+ * also stored in the local Maven repository, so that subsequent builds don't need to resolve the
+ * target definition at all. Note that this means that changes in the referenced p2 repositories
+ * are not seen until the cache is deleted. Results which have not been used for
+ * {@value ResolutionResultCache#MAX_UNUSED_DAYS} days are deleted when the cache is first written
+ * to in a build.
+ * </p>
+ */
+public class TargetDefinitionResolutionCache {
+
+    public static final String SERVICE_NAME = TargetDefinitionResolutionCache.class.getName();
+
+    public static final String PROP_DISK_CACHE = "tycho.targetDefinition.diskCache";
+
+    public static final String DISK_CACHE_RELPATH = ".meta/p2-target-definitions";
+
+    /**
+     * Version of the key computation and of the stored results; to be increased whenever one of
+     * them changes, so that results stored by other Tycho versions are not used.
+     */
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String CACHE_FILE_SUFFIX = ".xml";
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final File diskCacheDir;
+
+    private boolean pruned;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private static class Entry {
+        TargetPlatformContent content;
+    }
+
+    /**
+     * @param diskCacheDir
+     *            directory to store resolution results in, or <code>null</code> to only cache in
+     *            memory
+     */
+    public TargetDefinitionResolutionCache(File diskCacheDir) {
+        this.diskCacheDir = diskCacheDir;
+    }
+
+    /**
+     * Creates a cache for the given local Maven repository, which stores resolution results on disk
+     * if this has been enabled via the system property {@value #PROP_DISK_CACHE}.
+     */
+    public static TargetDefinitionResolutionCache forLocalRepository(File localMavenRepositoryRoot) {
+        if (Boolean.parseBoolean(System.getProperty(PROP_DISK_CACHE))) {
+            return new TargetDefinitionResolutionCache(new File(localMavenRepositoryRoot, DISK_CACHE_RELPATH));
+        }
+        return new TargetDefinitionResolutionCache(null);
+    }
+
+    public TargetPlatformContent resolveContent(TargetDefinition definition, List<Map<String, String>> environments,
+            IProvisioningAgent agent, MavenLogger logger) throws TargetDefinitionSyntaxException,
+            TargetDefinitionResolutionException {
+        String key = computeKey(definition, environments);
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+
+        synchronized (entry) {
+            if (entry.content == null) {
+                entry.content = loadFromDisk(key, definition, logger);
+            }
+            if (entry.content == null) {
+                TargetDefinitionResolver resolver = new TargetDefinitionResolver(environments, agent, logger);
+                entry.content = resolver.resolveContent(definition);
+                saveToDisk(key, entry.content, logger);
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Using cached resolution result of target definition (" + key + ")");
+            }
+            return entry.content;
+        }
+    }
+
+    private TargetPlatformContent loadFromDisk(String key, TargetDefinition definition, MavenLogger logger) {
+        if (diskCacheDir == null) {
+            return null;
+        }
+        File file = getCacheFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream is = new FileInputStream(file);
+            Set<IInstallableUnit> units;
+            try {
+                units = new MetadataIO().readXML(is);
+            } finally {
+                is.close();
+            }
+            // results are pruned by the time of their last use
+            file.setLastModified(System.currentTimeMillis());
+            return new CachedTargetPlatformContent(units, getArtifactRepositoryLocations(definition));
+        } catch (IOException e) {
+            logger.warn("Could not read cached target definition resolution result " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToDisk(String key, TargetPlatformContent content, MavenLogger logger) {
+        if (diskCacheDir == null) {
+            return;
+        }
+        pruneOnce();
+
+        File file = getCacheFile(key);
+        File tempFile = null;
+        try {
+            diskCacheDir.mkdirs();
+            // unique name, because other builds may store the same result at the same time
+            tempFile = File.createTempFile(key, TEMP_FILE_SUFFIX, diskCacheDir);
+            new MetadataIO().writeXML(new LinkedHashSet<IInstallableUnit>(content.getUnits()), tempFile);
+
+            // publish atomically so that concurrent builds never read partially written files
+            RepositoryFileLock.replace(tempFile, file);
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            logger.warn("Could not store target definition resolution result " + file + ": " + e.getMessage());
+        }
+    }
+
+    private File getCacheFile(String key) {
+        return new File(diskCacheDir, key + CACHE_FILE_SUFFIX);
+    }
+
+    private synchronized void pruneOnce() {
+        if (pruned) {
+            return;
+        }
+        pruned = true;
+        ResolutionResultCache.prune(diskCacheDir, CACHE_FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the artifact repositories of the definition; consistent with
+     * {@link TargetDefinitionResolver#resolveContent(TargetDefinition)}.
+     */
+    private static List<URI> getArtifactRepositoryLocations(TargetDefinition definition) {
+        List<URI> result = new ArrayList<URI>();
+        for (Location location : definition.getLocations()) {
+            if (location instanceof InstallableUnitLocation) {
+                for (Repository repository : ((InstallableUnitLocation) location).getRepositories()) {
+                    result.add(repository.getLocation());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes a hash of all parts of the target definition and of the environments which are
+     * relevant for the resolution.
+     */
+    static String computeKey(TargetDefinition definition, List<Map<String, String>> environments) {
+        StringBuilder content = new StringBuilder();
+        content.append("format:").append(FORMAT_VERSION).append('\n');
+        for (Location location : definition.getLocations()) {
+            content.append("location:").append(location.getTypeDescription()).append('\n');
+            if (location instanceof InstallableUnitLocation) {
+                InstallableUnitLocation iuLocation = (InstallableUnitLocation) location;
+                content.append("includeMode:").append(iuLocation.getIncludeMode()).append('\n');
+                content.append("includeAllEnvironments:").append(iuLocation.includeAllEnvironments()).append('\n');
+                for (Repository repository : iuLocation.getRepositories()) {
+                    content.append("repository:").append(repository.getLocation()).append('\n');
+                }
+                for (Unit unit : iuLocation.getUnits()) {
+                    content.append("unit:").append(unit.getId()).append('/').append(unit.getVersion()).append('\n');
+                }
+            }
+        }
+        for (Map<String, String> environment : environments) {
+            content.append("environment:").append(new TreeMap<String, String>(environment)).append('\n');
+        }
+        return InstallableUnitFingerprint.sha1(content.toString());
+    }
+
+    private static class CachedTargetPlatformContent implements TargetPlatformContent {
+
+        private final Collection<? extends IInstallableUnit> units;
+        private final Collection<URI> artifactRepositories;
+
+        CachedTargetPlatformContent(Collection<? extends IInstallableUnit> units,
+                Collection<URI> artifactRepositories) {
+            this.units = units;
+            this.artifactRepositories = artifactRepositories;
+        }
+
+        public Collection<? extends IInstallableUnit> getUnits() {
+            return units;
+        }
+
+        public Collection<URI> getArtifactRepositoryLocations() {
+            return artifactRepositories;
+        }
+    }
+}
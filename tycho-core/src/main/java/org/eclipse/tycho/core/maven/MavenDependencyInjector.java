@@ -138,8 +138,8 @@ public final class MavenDependencyInjector {
     }
 
     private List<String> getClasspathElements(File bundleLocation) {
-        ManifestElement[] classpathHeader = bundleReader.parseHeader(Constants.BUNDLE_CLASSPATH,
-                bundleReader.loadManifest(bundleLocation));
+        ManifestElement[] classpathHeader = bundleReader.loadManifest(bundleLocation).getParsedHeader(
+                Constants.BUNDLE_CLASSPATH);
         if (classpathHeader == null || classpathHeader.length == 0) {
             return DOT_CLASSPATH;
         }
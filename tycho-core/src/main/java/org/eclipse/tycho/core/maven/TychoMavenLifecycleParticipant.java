@@ -14,6 +14,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
@@ -24,6 +29,8 @@ import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
 import org.eclipse.tycho.ReactorProject;
+import org.eclipse.tycho.core.facade.ThreadingUtils;
+import org.eclipse.tycho.core.osgitools.AbstractTychoProject;
 import org.eclipse.tycho.core.osgitools.BundleReader;
 import org.eclipse.tycho.core.osgitools.DefaultBundleReader;
 import org.eclipse.tycho.core.osgitools.DefaultReactorProject;
@@ -32,6 +39,12 @@ import org.eclipse.tycho.resolver.TychoDependencyResolver;
 
 @Component(role = AbstractMavenLifecycleParticipant.class, hint = "TychoMavenLifecycleListener")
 public class TychoMavenLifecycleParticipant extends AbstractMavenLifecycleParticipant implements Disposable {
+    /**
+     * Number of threads used to resolve the target platforms of the reactor projects. Defaults to
+     * 1, i.e. projects are resolved one after another.
+     */
+    public static final String PROP_RESOLVER_THREADS = "tycho.resolver.threads";
+
     @Requirement
     private Logger logger;
 
@@ -87,8 +100,86 @@ public class TychoMavenLifecycleParticipant extends AbstractMavenLifecyclePartic
 
         List<ReactorProject> reactorProjects = DefaultReactorProject.adapt(session);
 
-        for (MavenProject project : projects) {
-            resolver.resolveProject(session, project, reactorProjects);
+        int threads = getThreads(PROP_RESOLVER_THREADS, 1);
+        if (threads <= 1 || projects.size() <= 1) {
+            for (MavenProject project : projects) {
+                resolver.resolveProject(session, project, reactorProjects);
+            }
+        } else {
+            resolveProjectsInParallel(session, projects, reactorProjects, threads);
+        }
+
+        if (logger.isDebugEnabled()) {
+            int savedDescriptorParses = 0;
+            for (ReactorProject reactorProject : reactorProjects) {
+                savedDescriptorParses += AbstractTychoProject.getSavedDescriptorParses(reactorProject);
+            }
+            logger.debug("Reused parsed project descriptors " + savedDescriptorParses + " times");
+        }
+    }
+
+    /**
+     * Resolves the projects concurrently. All projects have been set up before, so the resolution
+     * of one project only reads the dependency metadata of the other projects.
+     */
+    private void resolveProjectsInParallel(final MavenSession session, List<MavenProject> projects,
+            final List<ReactorProject> reactorProjects, int threads) throws MavenExecutionException {
+        logger.info("Resolving target platforms of " + projects.size() + " projects with " + threads + " threads");
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(projects.size());
+        for (final MavenProject project : projects) {
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    resolver.resolveProject(session, project, reactorProjects);
+                    return null;
+                }
+            });
+        }
+        try {
+            runInParallel(tasks, threads, "tycho-resolver-");
+        } catch (InterruptedException e) {
+            throw new MavenExecutionException("Interrupted while resolving target platforms", e);
+        }
+    }
+
+    /**
+     * Runs the tasks in a pool with the given number of threads and waits for all of them. In case
+     * of failures, the failure of the first task (in reactor order) is rethrown, which is the same
+     * failure as in a sequential build.
+     */
+    static void runInParallel(List<Callable<Object>> tasks, int threads, String threadNamePrefix)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()),
+                ThreadingUtils.newDaemonThreadFactory(threadNamePrefix));
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>(tasks.size());
+            for (Callable<Object> task : tasks) {
+                results.add(executor.submit(task));
+            }
+
+            for (Future<Object> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int getThreads(String property, int defaultThreads) throws MavenExecutionException {
+        try {
+            return ThreadingUtils.getThreads(property, defaultThreads);
+        } catch (IllegalArgumentException e) {
+            throw new MavenExecutionException(e.getMessage(), e);
         }
     }
 
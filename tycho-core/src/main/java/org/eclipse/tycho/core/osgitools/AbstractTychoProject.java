@@ -11,10 +11,12 @@
 package org.eclipse.tycho.core.osgitools;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.eclipse.tycho.ReactorProject;
 import org.eclipse.tycho.core.TargetEnvironment;
 import org.eclipse.tycho.core.TargetPlatform;
 import org.eclipse.tycho.core.TargetPlatformConfiguration;
@@ -26,6 +28,44 @@ import org.eclipse.tycho.core.utils.TychoProjectUtils;
 
 public abstract class AbstractTychoProject extends AbstractLogEnabled implements TychoProject {
 
+    /**
+     * Returns how often the parsed descriptor (e.g. feature.xml) of the given reactor project has
+     * been reused instead of parsing the descriptor again.
+     */
+    public static int getSavedDescriptorParses(ReactorProject project) {
+        ParsedDescriptor parsed = (ParsedDescriptor) project.getContextValue(TychoConstants.CTX_PARSED_DESCRIPTOR);
+        return parsed != null ? parsed.reuses.get() : 0;
+    }
+
+    /**
+     * Returns the parsed project descriptor which has been stored in the project context, or
+     * <code>null</code> if there is none. The descriptor is kept for the rest of the session, so it
+     * must not be modified, and it must only be used for descriptors which are not regenerated
+     * during the build.
+     */
+    protected static Object getParsedDescriptor(ReactorProject project) {
+        ParsedDescriptor parsed = (ParsedDescriptor) project.getContextValue(TychoConstants.CTX_PARSED_DESCRIPTOR);
+        if (parsed == null) {
+            return null;
+        }
+        parsed.reuses.incrementAndGet();
+        return parsed.descriptor;
+    }
+
+    protected static void setParsedDescriptor(ReactorProject project, Object descriptor) {
+        project.setContextValue(TychoConstants.CTX_PARSED_DESCRIPTOR, new ParsedDescriptor(descriptor));
+    }
+
+    private static class ParsedDescriptor {
+        final Object descriptor;
+
+        final AtomicInteger reuses = new AtomicInteger();
+
+        ParsedDescriptor(Object descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+
     public TargetPlatform getTargetPlatform(MavenProject project) {
         return TychoProjectUtils.getTargetPlatform(project);
     }
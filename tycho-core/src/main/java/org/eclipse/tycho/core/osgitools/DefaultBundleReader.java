@@ -14,13 +14,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
-import java.util.jar.Attributes;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
@@ -31,10 +32,11 @@ import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.eclipse.osgi.service.pluginconversion.PluginConversionException;
-import org.eclipse.osgi.util.ManifestElement;
-import org.osgi.framework.BundleException;
+import org.eclipse.tycho.core.utils.TychoVersion;
+import org.eclipse.tycho.p2.repository.RepositoryFileLock;
 import org.osgi.framework.Constants;
 
 import copy.org.eclipse.core.runtime.internal.adaptor.PluginConverterImpl;
@@ -45,19 +47,135 @@ public class DefaultBundleReader extends AbstractLogEnabled implements BundleRea
 
     private File cacheDir;
 
-    private static final Map<File, Manifest> manifestCache = new HashMap<File, Manifest>();
-    private Set<String> extractedFiles = new HashSet<String>();
+    /**
+     * Maximum number of manifests kept in the cache. The cache is shared by all builds in the JVM,
+     * so it must not grow with every jar ever read in a long-lived process.
+     */
+    private static final int MANIFEST_CACHE_SIZE = 5000;
+
+    private static final Map<File, CacheEntry> manifestCache = new LinkedHashMap<File, CacheEntry>(16,
+            0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, CacheEntry> eldest) {
+            return size() > MANIFEST_CACHE_SIZE;
+        }
+    };
+
+    private static final AtomicLong manifestCacheHits = new AtomicLong();
+
+    private static final AtomicLong manifestCacheMisses = new AtomicLong();
+
+    /**
+     * Location of the extracted bundle entries within {@link #CACHE_PATH}. The entries are stored in
+     * <code>&lt;SHA-1 of the bundle jar&gt;/&lt;SHA-1 of the entry path&gt;/&lt;entry path&gt;</code>,
+     * so that the cache can be shared by all builds using the same local Maven repository.
+     */
+    private static final String EXTRACTED_ENTRIES_PATH = "nested";
+
+    /**
+     * Extracted bundles which have not been used for this time are removed from the cache.
+     */
+    private static final long EXTRACTED_ENTRIES_MAX_UNUSED_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * File in each extraction directory whose modification time is the last use of the directory.
+     * (The modification time of the directory itself changes with every lock file.)
+     */
+    private static final String EXTRACTION_USED_MARKER = ".used";
+
+    /**
+     * Location of the manifests generated from the plugin.xml or fragment.xml of bundle jars within
+     * {@link #CACHE_PATH}. The manifests are stored in
+     * <code>&lt;conversion key&gt;/META-INF/MANIFEST.MF</code>, where the key is computed from the
+     * content of the jar and the converter version.
+     */
+    private static final String CONVERTED_MANIFESTS_PATH = "converted";
+
+    private static final String CONVERTER_TARGET_VERSION = "3.2";
+
+    /**
+     * The plugin converter is part of Tycho, so a new Tycho version may convert differently.
+     */
+    private static final String CONVERTER_VERSION = TychoVersion.getTychoVersion() + "/" + CONVERTER_TARGET_VERSION;
+
+    /**
+     * Maximum number of jar checksums kept in memory. The checksums are only needed for jars with
+     * nested entries, so there are much fewer of them than manifests.
+     */
+    private static final int JAR_CHECKSUM_CACHE_SIZE = 1000;
+
+    /** bundle jar stamp (path, modification time and size) -> SHA-1 of the jar */
+    private static final Map<String, String> jarChecksums = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > JAR_CHECKSUM_CACHE_SIZE;
+        }
+    };
+
+    /** extraction directories of the bundle jars which have been marked as used in this JVM */
+    private static final Set<File> usedExtractionDirs = new HashSet<File>();
 
     @Requirement(hint = "zip")
     private UnArchiver zipUnArchiver;
 
-    public Manifest loadManifest(File bundleLocation) {
-        Manifest manifest = manifestCache.get(bundleLocation);
+    public OsgiManifest loadManifest(File bundleLocation) {
+        File key = bundleLocation.getAbsoluteFile();
+        File stampFile = getStampFile(key);
+        long lastModified = stampFile.lastModified();
+        long length = stampFile.length();
+
+        CacheEntry entry;
+        synchronized (manifestCache) {
+            entry = manifestCache.get(key);
+        }
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            manifestCacheHits.incrementAndGet();
+            return entry.manifest;
+        }
+
+        // load outside of the lock; concurrent loads of the same bundle yield equal manifests
+        manifestCacheMisses.incrementAndGet();
+        Manifest manifest = doLoadManifest(bundleLocation);
         if (manifest == null) {
-            manifest = doLoadManifest(bundleLocation);
-            manifestCache.put(bundleLocation, manifest);
+            synchronized (manifestCache) {
+                manifestCache.remove(key);
+            }
+            return null;
+        }
+        entry = new CacheEntry(lastModified, length, new OsgiManifest(manifest));
+        synchronized (manifestCache) {
+            manifestCache.put(key, entry);
+        }
+        return entry.manifest;
+    }
+
+    /**
+     * Returns the file whose modification time and size determine whether a cached manifest of the
+     * given bundle is still up-to-date.
+     */
+    private static File getStampFile(File bundleLocation) {
+        if (bundleLocation.isDirectory()) {
+            String[] candidates = { JarFile.MANIFEST_NAME, "plugin.xml", "fragment.xml" };
+            for (String candidate : candidates) {
+                File file = new File(bundleLocation, candidate);
+                if (file.isFile()) {
+                    return file;
+                }
+            }
         }
-        return manifest;
+        return bundleLocation;
+    }
+
+    public long getManifestCacheHits() {
+        return manifestCacheHits.get();
+    }
+
+    public long getManifestCacheMisses() {
+        return manifestCacheMisses.get();
     }
 
     private Manifest doLoadManifest(File bundleLocation) {
@@ -130,27 +248,49 @@ public class DefaultBundleReader extends AbstractLogEnabled implements BundleRea
         }
     }
 
-    private File convertPluginManifest(File bundleLocation) throws PluginConversionException {
-        PluginConverterImpl converter = new PluginConverterImpl(null, null);
-        String name = bundleLocation.getName();
-        if (name.endsWith(".jar")) {
-            name = name.substring(0, name.length() - 4);
+    private File convertPluginManifest(File bundleLocation) throws PluginConversionException, IOException {
+        if (bundleLocation.isDirectory()) {
+            File manifestFile = new File(cacheDir, bundleLocation.getName() + "/META-INF/MANIFEST.MF");
+            return convertPluginManifest(bundleLocation, manifestFile);
+        }
+
+        // the analysis of the jars is expensive, so the result is stored in the local repository
+        String key = sha1(getChecksum(bundleLocation) + "/" + CONVERTER_VERSION);
+        File convertedDir = new File(new File(cacheDir, CONVERTED_MANIFESTS_PATH), key);
+        File manifestFile = new File(convertedDir, JarFile.MANIFEST_NAME);
+        if (manifestFile.isFile()) {
+            return manifestFile;
         }
-        File manifestFile = new File(cacheDir, name + "/META-INF/MANIFEST.MF");
+
+        RepositoryFileLock lock = RepositoryFileLock.lock(convertedDir);
+        try {
+            if (manifestFile.isFile()) {
+                // converted by another thread or process in the meantime
+                return manifestFile;
+            }
+            File tempDir = new File(convertedDir.getPath() + ".tmp");
+            FileUtils.deleteDirectory(tempDir);
+            if (convertPluginManifest(bundleLocation, new File(tempDir, JarFile.MANIFEST_NAME)) == null) {
+                FileUtils.deleteDirectory(tempDir);
+                return null;
+            }
+            // publish atomically so that other processes never read partially written manifests
+            if (!tempDir.renameTo(convertedDir)) {
+                throw new IOException("Could not rename " + tempDir + " to " + convertedDir);
+            }
+            return manifestFile;
+        } finally {
+            lock.release();
+        }
+    }
+
+    private synchronized File convertPluginManifest(File bundleLocation, File manifestFile)
+            throws PluginConversionException {
+        PluginConverterImpl converter = new PluginConverterImpl(null, null);
         manifestFile.getParentFile().mkdirs();
-        converter
-                .convertManifest(bundleLocation, manifestFile, false /* compatibility */, "3.2" /*
-                                                                                                 * target
-                                                                                                 * version
-                                                                                                 */, true /*
-                                                                                                           * analyse
-                                                                                                           * jars
-                                                                                                           * to
-                                                                                                           * set
-                                                                                                           * export
-                                                                                                           * -
-                                                                                                           * package
-                                                                                                           */, null /* devProperties */);
+        converter.convertManifest(bundleLocation, manifestFile, false /* compatibility */,
+                CONVERTER_TARGET_VERSION /* target version */, true /* analyse jars to set export-package */,
+                null /* devProperties */);
         if (manifestFile.exists()) {
             return manifestFile;
         }
@@ -159,37 +299,60 @@ public class DefaultBundleReader extends AbstractLogEnabled implements BundleRea
 
     public void setLocationRepository(File basedir) {
         this.cacheDir = new File(basedir, CACHE_PATH);
+        removeUnusedExtractedEntries();
     }
 
-    public Properties toProperties(Manifest mf) {
-        Attributes attrs = mf.getMainAttributes();
-        Iterator<?> iter = attrs.keySet().iterator();
-        Properties result = new Properties();
-        while (iter.hasNext()) {
-            Attributes.Name key = (Attributes.Name) iter.next();
-            result.put(key.toString(), attrs.get(key));
+    private void removeUnusedExtractedEntries() {
+        File[] extractionDirs = new File(cacheDir, EXTRACTED_ENTRIES_PATH).listFiles();
+        if (extractionDirs == null) {
+            return;
+        }
+        long threshold = System.currentTimeMillis() - EXTRACTED_ENTRIES_MAX_UNUSED_MILLIS;
+        for (File extractionDir : extractionDirs) {
+            if (extractionDir.isDirectory() && getLastUsed(extractionDir) < threshold) {
+                try {
+                    removeUnusedExtractionDir(extractionDir);
+                } catch (IOException e) {
+                    getLogger().debug("Could not remove unused extracted bundle entries " + extractionDir, e);
+                }
+            }
         }
-        return result;
     }
 
-    public ManifestElement[] parseHeader(String header, Manifest mf) {
-        String property = toProperties(mf).getProperty(header);
-
-        if (property == null) {
-            return null;
+    /**
+     * Removes the entries of the given extraction directory. Each entry is removed while holding
+     * the lock used by {@link #extractEntry(File, String, File)}, and only if the directory has not
+     * been marked as used by another build in the meantime.
+     */
+    private static void removeUnusedExtractionDir(File extractionDir) throws IOException {
+        File[] entryDirs = extractionDir.listFiles();
+        if (entryDirs == null) {
+            return;
         }
-
-        try {
-            return ManifestElement.parseHeader(header, property);
-        } catch (BundleException e) {
-            throw new RuntimeException(e);
+        long lastUsed = getLastUsed(extractionDir);
+        for (File entryDir : entryDirs) {
+            if (!entryDir.isDirectory() || entryDir.getName().endsWith(".tmp")) {
+                continue;
+            }
+            RepositoryFileLock lock = RepositoryFileLock.lock(entryDir);
+            try {
+                if (getLastUsed(extractionDir) != lastUsed) {
+                    return;
+                }
+                FileUtils.deleteDirectory(entryDir);
+                FileUtils.deleteDirectory(new File(entryDir.getPath() + ".tmp"));
+            } finally {
+                lock.release();
+            }
         }
+        new File(extractionDir, EXTRACTION_USED_MARKER).delete();
+        // only succeeds if no entry has been extracted in the meantime
+        extractionDir.delete();
     }
 
-    public boolean isDirectoryShape(Manifest mf) {
-        ManifestElement[] elements = parseHeader("Eclipse-BundleShape", mf);
-
-        return elements != null && elements.length > 0 && "dir".equals(elements[0].getValue());
+    private static long getLastUsed(File extractionDir) {
+        File marker = new File(extractionDir, EXTRACTION_USED_MARKER);
+        return marker.isFile() ? marker.lastModified() : extractionDir.lastModified();
     }
 
     public File getEntry(File bundleLocation, String path) {
@@ -198,16 +361,15 @@ public class DefaultBundleReader extends AbstractLogEnabled implements BundleRea
             result = new File(bundleLocation, path);
         } else {
             try {
-                File outputDirectory = new File(cacheDir, bundleLocation.getName());
-                result = new File(outputDirectory, path);
-                String resultPath = result.getCanonicalPath();
-                if (extractedFiles.contains(resultPath) && result.exists()) {
-                    return result;
-                } else {
-                    zipUnArchiver.setSourceFile(bundleLocation);
-                    zipUnArchiver.extract(path, outputDirectory);
-                    extractedFiles.add(resultPath);
+                File extractionDir = new File(new File(cacheDir, EXTRACTED_ENTRIES_PATH), getChecksum(bundleLocation));
+                File entryDir = new File(extractionDir, sha1(path));
+                // marked first, so that concurrent cleanups keep the entry once it has been found
+                markUsed(extractionDir);
+                if (!entryDir.isDirectory()) {
+                    extractEntry(bundleLocation, path, entryDir);
+                    markUsed(extractionDir);
                 }
+                result = new File(entryDir, path);
             } catch (ArchiverException e) {
                 throw new RuntimeException(e);
             } catch (IOException e) {
@@ -221,4 +383,116 @@ public class DefaultBundleReader extends AbstractLogEnabled implements BundleRea
             return null;
         }
     }
+
+    /**
+     * Extracts the given entry into a temporary directory and then renames that directory to
+     * <code>entryDir</code>, so that other threads and processes never see partially extracted
+     * entries. Extractions into the same directory are serialized with a file lock.
+     */
+    private void extractEntry(File bundleLocation, String path, File entryDir) throws IOException,
+            ArchiverException {
+        RepositoryFileLock lock = RepositoryFileLock.lock(entryDir);
+        try {
+            if (entryDir.isDirectory()) {
+                // extracted by another thread or process in the meantime
+                return;
+            }
+            File tempDir = new File(entryDir.getPath() + ".tmp");
+            FileUtils.deleteDirectory(tempDir);
+            tempDir.mkdirs();
+            // the unarchiver is stateful, so extraction must not happen concurrently
+            synchronized (this) {
+                zipUnArchiver.setSourceFile(bundleLocation);
+                zipUnArchiver.extract(path, tempDir);
+            }
+            if (!tempDir.renameTo(entryDir)) {
+                throw new IOException("Could not rename " + tempDir + " to " + entryDir);
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Updates the last use of the extraction directory once per JVM, so that it is not removed by
+     * {@link #removeUnusedExtractedEntries()}.
+     */
+    private static void markUsed(File extractionDir) throws IOException {
+        synchronized (usedExtractionDirs) {
+            if (usedExtractionDirs.contains(extractionDir)) {
+                return;
+            }
+            File marker = new File(extractionDir, EXTRACTION_USED_MARKER);
+            // a directory which doesn't exist yet is marked again after the extraction
+            if (marker.setLastModified(System.currentTimeMillis())
+                    || (extractionDir.isDirectory() && marker.createNewFile())) {
+                usedExtractionDirs.add(extractionDir);
+            }
+        }
+    }
+
+    private static String getChecksum(File jar) throws IOException {
+        String stamp = jar.getAbsolutePath() + '@' + jar.lastModified() + ':' + jar.length();
+        synchronized (jarChecksums) {
+            String checksum = jarChecksums.get(stamp);
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        MessageDigest digest = newSha1Digest();
+        InputStream is = new FileInputStream(jar);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            IOUtil.close(is);
+        }
+        String checksum = toHexString(digest.digest());
+        synchronized (jarChecksums) {
+            jarChecksums.put(stamp, checksum);
+        }
+        return checksum;
+    }
+
+    private static String sha1(String value) {
+        try {
+            return toHexString(newSha1Digest().digest(value.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static MessageDigest newSha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    private static class CacheEntry {
+
+        final long lastModified;
+
+        final long length;
+
+        final OsgiManifest manifest;
+
+        CacheEntry(long lastModified, long length, OsgiManifest manifest) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.manifest = manifest;
+        }
+    }
 }
@@ -58,7 +58,11 @@ public class DependencyComputer {
                 return false;
             }
             DependencyEntry other = (DependencyEntry) obj;
-            return desc.equals(other.desc) && rules.equals(other.rules);
+            return desc.equals(other.desc) && (rules == null ? other.rules == null : rules.equals(other.rules));
+        }
+
+        public int hashCode() {
+            return desc.hashCode();
         }
     }
 
@@ -202,9 +206,8 @@ public class DependencyComputer {
             return false;
         }
         List<AccessRule> rules = useInclusions ? getInclusions(map, desc) : null;
-        DependencyEntry entry = new DependencyEntry(desc, rules);
-        if (!entries.contains(entry))
-            entries.add(entry);
+        // no need to check for duplicates: all callers only get here for bundles newly added to the 'added' set
+        entries.add(new DependencyEntry(desc, rules));
         return true;
     }
 
@@ -28,7 +28,7 @@ public class EclipseFeatureProject extends AbstractArtifactBasedProject {
     @Override
     protected ArtifactDependencyWalker newDependencyWalker(MavenProject project, TargetEnvironment environment) {
         final File location = project.getBasedir();
-        final Feature feature = Feature.loadFeature(location);
+        final Feature feature = getFeature(DefaultReactorProject.adapt(project));
         return new AbstractArtifactDependencyWalker(getTargetPlatform(project, environment), getEnvironments(project,
                 environment)) {
             public void walk(ArtifactDependencyVisitor visitor) {
@@ -38,7 +38,7 @@ public class EclipseFeatureProject extends AbstractArtifactBasedProject {
     }
 
     public ArtifactKey getArtifactKey(ReactorProject project) {
-        Feature feature = Feature.loadFeature(project.getBasedir());
+        Feature feature = getFeature(project);
         return new DefaultArtifactKey(org.eclipse.tycho.ArtifactKey.TYPE_ECLIPSE_FEATURE, feature.getId(),
                 feature.getVersion());
     }
@@ -46,7 +46,16 @@ public class EclipseFeatureProject extends AbstractArtifactBasedProject {
     @Override
     public void setupProject(MavenSession session, MavenProject project) {
         // validate feature.xml
-        Feature.loadFeature(project.getBasedir());
+        setParsedDescriptor(DefaultReactorProject.adapt(project), Feature.loadFeature(project.getBasedir()));
+    }
+
+    private static Feature getFeature(ReactorProject project) {
+        Feature feature = (Feature) getParsedDescriptor(project);
+        if (feature == null) {
+            feature = Feature.loadFeature(project.getBasedir());
+            setParsedDescriptor(project, feature);
+        }
+        return feature;
     }
 
 }
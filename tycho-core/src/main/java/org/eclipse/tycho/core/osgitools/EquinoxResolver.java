@@ -18,7 +18,6 @@ import java.util.Hashtable;
 import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.Set;
-import java.util.jar.Manifest;
 
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
@@ -188,12 +187,12 @@ public class EquinoxResolver {
     }
 
     private Dictionary loadManifest(File bundleLocation) {
-        Manifest m = manifestReader.loadManifest(bundleLocation);
+        OsgiManifest m = manifestReader.loadManifest(bundleLocation);
         if (m == null) {
             return null;
         }
 
-        Dictionary manifest = manifestReader.toProperties(m);
+        Dictionary manifest = m.toProperties();
 
         // enforce symbolic name
         if (manifest.get(Constants.BUNDLE_SYMBOLICNAME) == null) {
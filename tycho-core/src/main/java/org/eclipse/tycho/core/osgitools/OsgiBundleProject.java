@@ -19,7 +19,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -126,13 +125,16 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
         }
 
         project.setContextValue(CTX_ARTIFACT_KEY, key);
+
+        // created eagerly so that the (possibly concurrent) resolution of other projects only reads it
+        getEclipsePluginProject(DefaultReactorProject.adapt(project));
     }
 
     public ArtifactKey readArtifactKey(File location) {
-        Manifest mf = bundleReader.loadManifest(location);
+        OsgiManifest mf = bundleReader.loadManifest(location);
 
-        ManifestElement[] id = bundleReader.parseHeader(Constants.BUNDLE_SYMBOLICNAME, mf);
-        ManifestElement[] version = bundleReader.parseHeader(Constants.BUNDLE_VERSION, mf);
+        ManifestElement[] id = mf.getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
+        ManifestElement[] version = mf.getParsedHeader(Constants.BUNDLE_VERSION);
 
         if (id == null || version == null) {
             return null;
@@ -143,12 +145,13 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
     }
 
     public String getManifestValue(String key, MavenProject project) {
-        Manifest mf = bundleReader.loadManifest(project.getBasedir());
-        return mf.getMainAttributes().getValue(key);
+        OsgiManifest mf = bundleReader.loadManifest(project.getBasedir());
+        return mf.getValue(key);
     }
 
     @Override
     public void resolveClassPath(MavenSession session, MavenProject project) {
+        long start = System.currentTimeMillis();
         TargetPlatform platform = getTargetPlatform(project);
 
         State state = getResolverState(project, platform);
@@ -176,7 +179,11 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
         addExtraClasspathEntries(classpath, projectProxy, platform);
 
         // dependencies
-        for (DependencyEntry entry : dependencyComputer.computeDependencies(state.getStateHelper(), bundleDescription)) {
+        long dependenciesStart = System.currentTimeMillis();
+        List<DependencyEntry> dependencies = dependencyComputer.computeDependencies(state.getStateHelper(),
+                bundleDescription);
+        long dependenciesTime = System.currentTimeMillis() - dependenciesStart;
+        for (DependencyEntry entry : dependencies) {
             File location = new File(entry.desc.getLocation());
             ArtifactDescriptor otherArtifact = platform.getArtifact(location);
             ReactorProject otherProject = otherArtifact.getMavenProject();
@@ -191,6 +198,13 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
         }
         project.setContextValue(TychoConstants.CTX_ECLIPSE_PLUGIN_CLASSPATH, classpath);
         addPDESourceRoots(project);
+
+        if (getLogger().isDebugEnabled()) {
+            getLogger().debug(
+                    "Computed classpath of " + project.getId() + " with " + dependencies.size() + " dependencies in "
+                            + (System.currentTimeMillis() - start) + " ms (dependency computation: "
+                            + dependenciesTime + " ms)");
+        }
     }
 
     private void addPDESourceRoots(MavenProject project) {
@@ -215,7 +229,7 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
         }
     }
 
-    public EclipsePluginProjectImpl getEclipsePluginProject(ReactorProject otherProject) {
+    public synchronized EclipsePluginProjectImpl getEclipsePluginProject(ReactorProject otherProject) {
         EclipsePluginProjectImpl pdeProject = (EclipsePluginProjectImpl) otherProject
                 .getContextValue(TychoConstants.CTX_ECLIPSE_PLUGIN_PROJECT);
         if (pdeProject == null) {
@@ -375,8 +389,8 @@ public class OsgiBundleProject extends AbstractTychoProject implements BundlePro
 
     private String[] parseBundleClasspath(ArtifactDescriptor bundle) {
         String[] result = new String[] { "." };
-        Manifest mf = bundleReader.loadManifest(bundle.getLocation());
-        ManifestElement[] classpathEntries = bundleReader.parseHeader(Constants.BUNDLE_CLASSPATH, mf);
+        OsgiManifest mf = bundleReader.loadManifest(bundle.getLocation());
+        ManifestElement[] classpathEntries = mf.getParsedHeader(Constants.BUNDLE_CLASSPATH);
         if (classpathEntries != null) {
             result = new String[classpathEntries.length];
             for (int i = 0; i < classpathEntries.length; i++) {
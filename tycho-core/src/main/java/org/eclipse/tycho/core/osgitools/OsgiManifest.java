@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.core.osgitools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.eclipse.osgi.util.ManifestElement;
+import org.osgi.framework.BundleException;
+
+/**
+ * Read-only view of a bundle manifest. Headers are parsed on first access and the result is kept,
+ * so that instances can be shared between all users of the same bundle.
+ */
+public final class OsgiManifest {
+
+    private final Attributes mainAttributes;
+
+    private final Map<String, ManifestElement[]> parsedHeaders = new HashMap<String, ManifestElement[]>();
+
+    public OsgiManifest(Manifest manifest) {
+        this.mainAttributes = manifest.getMainAttributes();
+    }
+
+    /**
+     * Returns the raw value of the given header, or <code>null</code> if the header is not present.
+     */
+    public String getValue(String header) {
+        return mainAttributes.getValue(header);
+    }
+
+    /**
+     * Returns the parsed value of the given header, or <code>null</code> if the header is not
+     * present. The returned array must not be modified.
+     */
+    public synchronized ManifestElement[] getParsedHeader(String header) {
+        if (parsedHeaders.containsKey(header)) {
+            return parsedHeaders.get(header);
+        }
+        ManifestElement[] result = parseHeader(header);
+        parsedHeaders.put(header, result);
+        return result;
+    }
+
+    private ManifestElement[] parseHeader(String header) {
+        String value = getValue(header);
+
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return ManifestElement.parseHeader(header, value);
+        } catch (BundleException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns true if Eclipse-BundleShape header is set to dir.
+     *
+     * http://help.eclipse.org/galileo/index.jsp?topic=/org.eclipse.platform.doc.isv/reference/misc/
+     * bundle_manifest.html
+     *
+     * http://eclipsesource.com/blogs/2009/01/20/tip-eclipse-bundleshape/
+     */
+    public boolean isDirectoryShape() {
+        ManifestElement[] elements = getParsedHeader("Eclipse-BundleShape");
+
+        return elements != null && elements.length > 0 && "dir".equals(elements[0].getValue());
+    }
+
+    /**
+     * Returns a new, modifiable copy of all main attributes.
+     */
+    public Properties toProperties() {
+        Properties result = new Properties();
+        for (Map.Entry<Object, Object> entry : mainAttributes.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue());
+        }
+        return result;
+    }
+}
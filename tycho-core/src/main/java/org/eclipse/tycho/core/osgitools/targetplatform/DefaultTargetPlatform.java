@@ -14,12 +14,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -44,6 +43,11 @@ public class DefaultTargetPlatform implements TargetPlatform {
 
     protected final Map<File, ArtifactDescriptor> locations = new LinkedHashMap<File, ArtifactDescriptor>();
 
+    /**
+     * The artifacts by type and id. Needs to be kept consistent with {@link #artifacts}.
+     */
+    private final Map<String, ArtifactVersions> artifactsByTypeAndId = new HashMap<String, ArtifactVersions>();
+
     /**
      * Set of installable unit in the target platform of the module that do not come from the local
      * reactor.
@@ -72,27 +76,77 @@ public class DefaultTargetPlatform implements TargetPlatform {
     public void addArtifact(ArtifactDescriptor artifact) {
         ArtifactKey key = normalizeKey(artifact.getKey());
 
-        ArtifactKey cachedKey = KEY_CACHE.get(key);
-        if (cachedKey != null) {
-            key = cachedKey;
-        } else {
-            KEY_CACHE.put(key, key);
+        // the caches are shared by the target platforms of all projects, which may be resolved concurrently
+        synchronized (KEY_CACHE) {
+            ArtifactKey cachedKey = KEY_CACHE.get(key);
+            if (cachedKey != null) {
+                key = cachedKey;
+            } else {
+                KEY_CACHE.put(key, key);
+            }
         }
 
         artifact = normalizeArtifact(artifact);
 
-        ArtifactDescriptor cachedArtifact = ARTIFACT_CACHE.get(key);
-        if (cachedArtifact != null && eq(cachedArtifact.getLocation(), artifact.getLocation())
-                && eq(cachedArtifact.getMavenProject(), artifact.getMavenProject())) {
-            artifact = cachedArtifact;
-        } else {
-            ARTIFACT_CACHE.put(key, artifact);
+        synchronized (ARTIFACT_CACHE) {
+            ArtifactDescriptor cachedArtifact = ARTIFACT_CACHE.get(key);
+            if (cachedArtifact != null && eq(cachedArtifact.getLocation(), artifact.getLocation())
+                    && eq(cachedArtifact.getMavenProject(), artifact.getMavenProject())) {
+                artifact = cachedArtifact;
+            } else {
+                ARTIFACT_CACHE.put(key, artifact);
+            }
         }
 
-        artifacts.put(key, artifact);
+        putArtifact(key, artifact);
         locations.put(artifact.getLocation(), artifact);
     }
 
+    protected void putArtifact(ArtifactKey key, ArtifactDescriptor artifact) {
+        artifacts.put(key, artifact);
+
+        String typeAndId = typeAndId(key.getType(), key.getId());
+        ArtifactVersions versions = artifactsByTypeAndId.get(typeAndId);
+        if (versions == null) {
+            versions = new ArtifactVersions();
+            artifactsByTypeAndId.put(typeAndId, versions);
+        }
+        versions.put(key, artifact);
+    }
+
+    private static String typeAndId(String type, String id) {
+        return type + ':' + id;
+    }
+
+    /**
+     * All versions of the artifacts with the same type and id.
+     */
+    private static class ArtifactVersions {
+        private final Map<ArtifactKey, ArtifactDescriptor> artifacts = new LinkedHashMap<ArtifactKey, ArtifactDescriptor>();
+
+        /** the artifacts sorted by version, highest version first; created on demand */
+        private SortedMap<Version, ArtifactDescriptor> sortedArtifacts;
+
+        void put(ArtifactKey key, ArtifactDescriptor artifact) {
+            artifacts.put(key, artifact);
+            sortedArtifacts = null;
+        }
+
+        SortedMap<Version, ArtifactDescriptor> getSortedArtifacts() {
+            if (sortedArtifacts == null) {
+                sortedArtifacts = new TreeMap<Version, ArtifactDescriptor>(new Comparator<Version>() {
+                    public int compare(Version o1, Version o2) {
+                        return -o1.compareTo(o2);
+                    };
+                });
+                for (Map.Entry<ArtifactKey, ArtifactDescriptor> entry : artifacts.entrySet()) {
+                    sortedArtifacts.put(Version.parseVersion(entry.getKey().getVersion()), entry.getValue());
+                }
+            }
+            return sortedArtifacts;
+        }
+    }
+
     private ArtifactDescriptor normalizeArtifact(ArtifactDescriptor artifact) {
         try {
             File location = artifact.getLocation().getCanonicalFile();
@@ -142,21 +196,14 @@ public class DefaultTargetPlatform implements TargetPlatform {
             return null;
         }
 
-        // features with matching id, sorted by version, highest version first
-        SortedMap<Version, ArtifactDescriptor> relevantArtifacts = new TreeMap<Version, ArtifactDescriptor>(
-                new Comparator<Version>() {
-                    public int compare(Version o1, Version o2) {
-                        return -o1.compareTo(o2);
-                    };
-                });
-
-        for (Map.Entry<ArtifactKey, ArtifactDescriptor> entry : this.artifacts.entrySet()) {
-            ArtifactKey key = entry.getKey();
-            if (type.equals(key.getType()) && id.equals(key.getId())) {
-                relevantArtifacts.put(Version.parseVersion(key.getVersion()), entry.getValue());
-            }
+        ArtifactVersions versions = artifactsByTypeAndId.get(typeAndId(type, id));
+        if (versions == null) {
+            return null;
         }
 
+        // artifacts with matching id, sorted by version, highest version first
+        SortedMap<Version, ArtifactDescriptor> relevantArtifacts = versions.getSortedArtifacts();
+
         if (relevantArtifacts.isEmpty()) {
             return null;
         }
@@ -173,10 +220,15 @@ public class DefaultTargetPlatform implements TargetPlatform {
         String qualifier = parsedVersion.getQualifier();
 
         if (qualifier == null || "".equals(qualifier) || ANY_QUALIFIER.equals(qualifier)) {
-            // latest qualifier
-            for (Map.Entry<Version, ArtifactDescriptor> entry : relevantArtifacts.entrySet()) {
+            // latest qualifier, i.e. the highest version below the next micro version
+            Version nextMicroVersion = new Version(parsedVersion.getMajor(), parsedVersion.getMinor(),
+                    parsedVersion.getMicro() + 1);
+            for (Map.Entry<Version, ArtifactDescriptor> entry : relevantArtifacts.tailMap(nextMicroVersion)
+                    .entrySet()) {
                 if (baseVersionEquals(parsedVersion, entry.getKey())) {
                     return entry.getValue();
+                } else if (!nextMicroVersion.equals(entry.getKey())) {
+                    break;
                 }
             }
         }
@@ -215,11 +267,10 @@ public class DefaultTargetPlatform implements TargetPlatform {
     }
 
     public void removeAll(String type, String id) {
-        Iterator<Entry<ArtifactKey, ArtifactDescriptor>> iter = artifacts.entrySet().iterator();
-        while (iter.hasNext()) {
-            ArtifactKey key = iter.next().getKey();
-            if (key.getType().equals(type) && key.getId().equals(id)) {
-                iter.remove();
+        ArtifactVersions versions = artifactsByTypeAndId.remove(typeAndId(type, id));
+        if (versions != null) {
+            for (ArtifactKey key : versions.artifacts.keySet()) {
+                artifacts.remove(key);
             }
         }
     }
@@ -19,7 +19,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.Manifest;
 
 import org.apache.maven.ProjectDependenciesResolver;
 import org.apache.maven.artifact.Artifact;
@@ -45,6 +44,7 @@ import org.eclipse.tycho.core.osgitools.AbstractTychoProject;
 import org.eclipse.tycho.core.osgitools.BundleReader;
 import org.eclipse.tycho.core.osgitools.DefaultArtifactKey;
 import org.eclipse.tycho.core.osgitools.DefaultReactorProject;
+import org.eclipse.tycho.core.osgitools.OsgiManifest;
 import org.eclipse.tycho.model.Feature;
 import org.osgi.framework.Constants;
 
@@ -207,14 +207,14 @@ public class LocalTargetPlatformResolver extends AbstractTargetPlatformResolver
     }
 
     public ArtifactKey getArtifactKey(MavenSession session, MavenProject project) {
-        Manifest mf = manifestReader.loadManifest(project.getBasedir());
+        OsgiManifest mf = manifestReader.loadManifest(project.getBasedir());
 
         if (mf == null) {
             return null;
         }
 
-        ManifestElement[] id = manifestReader.parseHeader(Constants.BUNDLE_SYMBOLICNAME, mf);
-        ManifestElement[] version = manifestReader.parseHeader(Constants.BUNDLE_VERSION, mf);
+        ManifestElement[] id = mf.getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
+        ManifestElement[] version = mf.getParsedHeader(Constants.BUNDLE_VERSION);
 
         if (id == null || version == null) {
             return null;
@@ -226,14 +226,14 @@ public class LocalTargetPlatformResolver extends AbstractTargetPlatformResolver
     }
 
     public ArtifactKey getArtifactKey(MavenSession session, File plugin) {
-        Manifest mf = manifestReader.loadManifest(plugin);
+        OsgiManifest mf = manifestReader.loadManifest(plugin);
 
         if (mf == null) {
             return null;
         }
 
-        ManifestElement[] id = manifestReader.parseHeader(Constants.BUNDLE_SYMBOLICNAME, mf);
-        ManifestElement[] version = manifestReader.parseHeader(Constants.BUNDLE_VERSION, mf);
+        ManifestElement[] id = mf.getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
+        ManifestElement[] version = mf.getParsedHeader(Constants.BUNDLE_VERSION);
 
         if (id == null || version == null) {
             return null;
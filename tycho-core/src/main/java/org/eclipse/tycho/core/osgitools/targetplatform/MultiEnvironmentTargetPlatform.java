@@ -13,6 +13,8 @@ package org.eclipse.tycho.core.osgitools.targetplatform;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.eclipse.tycho.ArtifactDescriptor;
+import org.eclipse.tycho.ArtifactKey;
 import org.eclipse.tycho.core.TargetEnvironment;
 import org.eclipse.tycho.core.TargetPlatform;
 
@@ -22,7 +24,9 @@ public class MultiEnvironmentTargetPlatform extends DefaultTargetPlatform {
     public void addPlatform(TargetEnvironment environment, DefaultTargetPlatform platform) {
         platforms.put(environment, platform);
 
-        artifacts.putAll(platform.artifacts);
+        for (Map.Entry<ArtifactKey, ArtifactDescriptor> entry : platform.artifacts.entrySet()) {
+            putArtifact(entry.getKey(), entry.getValue());
+        }
         locations.putAll(platform.locations);
         nonReactorUnits.addAll(platform.nonReactorUnits);
     }
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.core.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TychoMavenLifecycleParticipantTest extends TestCase {
+
+    public void testTasksRunInParallel() throws Exception {
+        final CountDownLatch running = new CountDownLatch(2);
+        final List<Boolean> overlapped = new ArrayList<Boolean>();
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < 2; i++) {
+            tasks.add(new Callable<Object>() {
+                public Object call() throws Exception {
+                    running.countDown();
+                    boolean other = running.await(10, TimeUnit.SECONDS);
+                    synchronized (overlapped) {
+                        overlapped.add(Boolean.valueOf(other));
+                    }
+                    return null;
+                }
+            });
+        }
+
+        TychoMavenLifecycleParticipant.runInParallel(tasks, 2, "test-");
+
+        assertEquals(2, overlapped.size());
+        assertTrue(overlapped.get(0).booleanValue());
+        assertTrue(overlapped.get(1).booleanValue());
+    }
+
+    public void testFailureOfFirstProjectIsRethrown() throws Exception {
+        final CountDownLatch secondFailed = new CountDownLatch(1);
+        final RuntimeException firstFailure = new RuntimeException("first");
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        tasks.add(new Callable<Object>() {
+            public Object call() throws Exception {
+                // fail only after the second project has failed
+                secondFailed.await(10, TimeUnit.SECONDS);
+                throw firstFailure;
+            }
+        });
+        tasks.add(new Callable<Object>() {
+            public Object call() {
+                secondFailed.countDown();
+                throw new RuntimeException("second");
+            }
+        });
+
+        try {
+            TychoMavenLifecycleParticipant.runInParallel(tasks, 2, "test-");
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(firstFailure, e);
+        }
+    }
+
+    public void testErrorIsRethrown() throws Exception {
+        final Error error = new Error();
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        tasks.add(new Callable<Object>() {
+            public Object call() {
+                return null;
+            }
+        });
+        tasks.add(new Callable<Object>() {
+            public Object call() {
+                throw error;
+            }
+        });
+
+        try {
+            TychoMavenLifecycleParticipant.runInParallel(tasks, 2, "test-");
+            fail();
+        } catch (Error e) {
+            assertSame(error, e);
+        }
+    }
+}
@@ -11,10 +11,16 @@
 package org.eclipse.tycho.core.test;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.codehaus.plexus.util.FileUtils;
 import org.eclipse.tycho.core.osgitools.BundleReader;
 import org.eclipse.tycho.core.osgitools.DefaultBundleReader;
+import org.eclipse.tycho.core.osgitools.OsgiManifest;
 import org.eclipse.tycho.testing.AbstractTychoMojoTestCase;
 
 public class DefaultBundleReaderTest extends AbstractTychoMojoTestCase {
@@ -76,14 +82,120 @@ public class DefaultBundleReaderTest extends AbstractTychoMojoTestCase {
         // make sure subdirectory of lib/ is extracted even if directory lib/ is already extracted
         // due to previous extraction of "lib/log4j.properties"
         assertTrue(new File(extractedDir, "subdir").isDirectory());
-        // extract the same file with older timestamp in archive again => must be a cache hit (skip extraction)
-        File olderContentBundleJar = new File(getBasedir(),
-                "src/test/resources/bundlereader/olderTimestamp/testNestedDirClasspath_1.0.0.201007261122.jar");
-        File log4jFileExtractedAgain = bundleReader.getEntry(olderContentBundleJar, "lib/log4j.properties");
+        // extract the same file again => must be a cache hit (skip extraction)
+        File log4jFileExtractedAgain = bundleReader.getEntry(bundleJar, "lib/log4j.properties");
         assertEquals(log4jFileExtractedAgain.getCanonicalPath(), extractedLog4jFile.getCanonicalPath());
         assertEquals(firstExtractionTimestamp, log4jFileExtractedAgain.lastModified());
     }
 
+    public void testGetEntryExtractionCacheIsContentAddressed() throws Exception {
+        File extractedLog4jFile = bundleReader.getEntry(getTestJar(), "lib/log4j.properties");
+        // same file name, but different content => must not be served from the cache
+        File olderContentBundleJar = new File(getBasedir(),
+                "src/test/resources/bundlereader/olderTimestamp/testNestedDirClasspath_1.0.0.201007261122.jar");
+        File olderLog4jFile = bundleReader.getEntry(olderContentBundleJar, "lib/log4j.properties");
+        assertTrue(olderLog4jFile.isFile());
+        assertFalse(olderLog4jFile.getCanonicalPath().equals(extractedLog4jFile.getCanonicalPath()));
+    }
+
+    public void testManifestCacheHit() throws Exception {
+        File bundleDir = createBundleDir("1.0.0");
+        OsgiManifest manifest = bundleReader.loadManifest(bundleDir);
+        long hits = bundleReader.getManifestCacheHits();
+
+        assertSame(manifest, bundleReader.loadManifest(bundleDir));
+        assertEquals(hits + 1, bundleReader.getManifestCacheHits());
+        assertSame(manifest.getParsedHeader("Bundle-Version"), manifest.getParsedHeader("Bundle-Version"));
+    }
+
+    public void testManifestCacheInvalidatedOnChange() throws Exception {
+        File bundleDir = createBundleDir("1.0.0");
+        OsgiManifest manifest = bundleReader.loadManifest(bundleDir);
+        assertEquals("1.0.0", manifest.getParsedHeader("Bundle-Version")[0].getValue());
+
+        File manifestFile = new File(bundleDir, JarFile.MANIFEST_NAME);
+        long lastModified = manifestFile.lastModified();
+        writeManifest(bundleDir, "1.0.1.qualifier");
+        manifestFile.setLastModified(lastModified);
+        assertEquals("1.0.1.qualifier",
+                bundleReader.loadManifest(bundleDir).getParsedHeader("Bundle-Version")[0].getValue());
+    }
+
+    public void testOsgiManifestToPropertiesIsCopy() throws Exception {
+        OsgiManifest manifest = bundleReader.loadManifest(createBundleDir("1.0.0"));
+        manifest.toProperties().put("Bundle-ClassPath", ".");
+
+        assertEquals("bundle", manifest.toProperties().get("Bundle-SymbolicName"));
+        assertNull(manifest.getValue("Bundle-ClassPath"));
+        assertNull(manifest.getParsedHeader("Bundle-ClassPath"));
+    }
+
+    public void testConvertedManifestIsReused() throws Exception {
+        File legacyJar = new File(cacheDir, "legacy_1.0.0.jar");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(legacyJar));
+        try {
+            zip.putNextEntry(new ZipEntry("plugin.xml"));
+            zip.write("<?xml version=\"1.0\"?>\n<plugin id=\"legacy\" name=\"Legacy\" version=\"1.0.0\"/>\n"
+                    .getBytes("UTF-8"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+
+        OsgiManifest manifest = bundleReader.loadManifest(legacyJar);
+        assertEquals("legacy", manifest.getParsedHeader("Bundle-SymbolicName")[0].getValue());
+        File[] convertedDirs = new File(cacheDir, DefaultBundleReader.CACHE_PATH + "/converted")
+                .listFiles(new FileFilter() {
+                    public boolean accept(File file) {
+                        return file.isDirectory();
+                    }
+                });
+        assertEquals(1, convertedDirs.length);
+        File convertedManifest = new File(convertedDirs[0], JarFile.MANIFEST_NAME);
+        long conversionTimestamp = convertedManifest.lastModified();
+
+        // same content, but a different file stamp => manifest must be re-read, but not converted again
+        legacyJar.setLastModified(legacyJar.lastModified() - 10000);
+        manifest = bundleReader.loadManifest(legacyJar);
+        assertEquals("legacy", manifest.getParsedHeader("Bundle-SymbolicName")[0].getValue());
+        assertEquals(conversionTimestamp, convertedManifest.lastModified());
+    }
+
+    public void testUnusedExtractedEntriesAreRemoved() throws Exception {
+        File nestedDir = new File(cacheDir, DefaultBundleReader.CACHE_PATH + "/nested");
+        File unusedEntry = createExtractedEntry(new File(nestedDir, "unused"));
+        long unusedTimestamp = System.currentTimeMillis() - 31L * 24 * 60 * 60 * 1000;
+        new File(unusedEntry.getParentFile(), ".used").setLastModified(unusedTimestamp);
+        File recentEntry = createExtractedEntry(new File(nestedDir, "recent"));
+
+        bundleReader.setLocationRepository(cacheDir);
+
+        assertFalse(unusedEntry.getParentFile().exists());
+        assertTrue(recentEntry.isDirectory());
+    }
+
+    private static File createExtractedEntry(File extractionDir) throws Exception {
+        File entryDir = new File(extractionDir, "entry");
+        File entryFile = new File(entryDir, "lib/log4j.properties");
+        entryFile.getParentFile().mkdirs();
+        FileUtils.fileWrite(entryFile.getAbsolutePath(), "");
+        new File(extractionDir, ".used").createNewFile();
+        return entryDir;
+    }
+
+    private File createBundleDir(String version) throws Exception {
+        File bundleDir = new File(cacheDir, "bundle");
+        writeManifest(bundleDir, version);
+        return bundleDir;
+    }
+
+    private static void writeManifest(File bundleDir, String version) throws Exception {
+        File manifestFile = new File(bundleDir, JarFile.MANIFEST_NAME);
+        manifestFile.getParentFile().mkdirs();
+        FileUtils.fileWrite(manifestFile.getAbsolutePath(), "Manifest-Version: 1.0\nBundle-SymbolicName: bundle\n"
+                + "Bundle-Version: " + version + "\n");
+    }
+
     private File getTestJar() {
         return new File(getBasedir(), "src/test/resources/bundlereader/testNestedDirClasspath_1.0.0.201007261122.jar");
     }
@@ -62,6 +62,38 @@ public class DefaultTargetPlatformTest {
         Assert.assertNull(tp.getArtifact(type, id, "9.9.9.qualifier"));
     }
 
+    @Test
+    public void testRemoveAll() {
+        DefaultTargetPlatform tp = new DefaultTargetPlatform();
+        addArtifact(tp, "foo", "foo", "1.0.0");
+        addArtifact(tp, "foo", "foo", "2.0.0");
+        addArtifact(tp, "foo", "bar", "1.0.0");
+
+        tp.removeAll("foo", "foo");
+
+        Assert.assertNull(tp.getArtifact("foo", "foo", null));
+        Assert.assertEquals(1, tp.getArtifacts().size());
+        Assert.assertEquals("1.0.0", tp.getArtifact("foo", "bar", null).getKey().getVersion());
+
+        addArtifact(tp, "foo", "foo", "3.0.0");
+        Assert.assertEquals("3.0.0", tp.getArtifact("foo", "foo", null).getKey().getVersion());
+    }
+
+    @Test
+    public void testLookupInLargePlatform() {
+        DefaultTargetPlatform tp = new DefaultTargetPlatform();
+        for (int i = 0; i < 10000; i++) {
+            addArtifact(tp, ArtifactKey.TYPE_ECLIPSE_PLUGIN, "bundle" + i, "1.0." + (i % 3) + ".v" + i);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            String expectedVersion = "1.0." + (i % 3) + ".v" + i;
+            Assert.assertEquals(expectedVersion, tp.getArtifact(ArtifactKey.TYPE_ECLIPSE_PLUGIN, "bundle" + i,
+                    "1.0." + (i % 3) + ".qualifier").getKey().getVersion());
+            Assert.assertNull(tp.getArtifact(ArtifactKey.TYPE_ECLIPSE_PLUGIN, "bundle" + i, "1.0.3"));
+        }
+    }
+
     private void addArtifact(DefaultTargetPlatform tp, String type, String id, String version) {
         ArtifactKey key = new DefaultArtifactKey(type, id, version);
         tp.addArtifactFile(key, new File(version), null);
@@ -69,6 +69,33 @@ public class DependencyComputerTest extends AbstractTychoMojoTestCase {
         Assert.assertTrue(dependencies.get(2).rules.isEmpty());
     }
 
+    @Test
+    public void testRepeatedResolutionUsesIndependentStates() throws Exception {
+        File basedir = getBasedir("projects/exportpackage");
+        File pom = new File(basedir, "pom.xml");
+        MavenExecutionRequest request = newMavenExecutionRequest(pom);
+        request.getProjectBuildingRequest().setProcessPlugins(false);
+        MavenExecutionResult result = maven.execute(request);
+
+        EquinoxResolver resolver = lookup(EquinoxResolver.class);
+
+        Map<File, MavenProject> basedirMap = MavenSessionUtils.getBasedirMap(result.getTopologicallySortedProjects());
+
+        MavenProject project = basedirMap.get(new File(basedir, "bundle"));
+        TargetPlatform platform = (TargetPlatform) project.getContextValue(TychoConstants.CTX_TARGET_PLATFORM);
+
+        State state1 = resolver.newResolvedState(project, platform);
+        State state2 = resolver.newResolvedState(project, platform);
+        Assert.assertNotSame(state1, state2);
+
+        BundleDescription bundle1 = state1.getBundleByLocation(project.getBasedir().getCanonicalPath());
+        BundleDescription bundle2 = state2.getBundleByLocation(project.getBasedir().getCanonicalPath());
+        Assert.assertNotSame(bundle1, bundle2);
+        Assert.assertEquals(bundle1.getBundleId(), bundle2.getBundleId());
+        Assert.assertEquals(dependencyComputer.computeDependencies(state1.getStateHelper(), bundle1).size(),
+                dependencyComputer.computeDependencies(state2.getStateHelper(), bundle2).size());
+    }
+
     @Test
     public void testTYCHO0378unwantedSelfDependency() throws Exception {
         File basedir = getBasedir("projects/TYCHO0378unwantedSelfDependency");
@@ -20,7 +20,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.jar.Manifest;
 
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -36,6 +35,7 @@ import org.eclipse.tycho.ArtifactDescriptor;
 import org.eclipse.tycho.ArtifactKey;
 import org.eclipse.tycho.core.TychoConstants;
 import org.eclipse.tycho.core.osgitools.BundleReader;
+import org.eclipse.tycho.core.osgitools.OsgiManifest;
 import org.eclipse.tycho.equinox.launching.BundleStartLevel;
 import org.eclipse.tycho.equinox.launching.EquinoxInstallation;
 import org.eclipse.tycho.equinox.launching.EquinoxInstallationDescription;
@@ -63,9 +63,9 @@ public class DefaultEquinoxInstallationFactory implements EquinoxInstallationFac
         for (ArtifactDescriptor artifact : description.getBundles()) {
             ArtifactKey key = artifact.getKey();
             File file = artifact.getLocation();
-            Manifest mf = manifestReader.loadManifest(file);
+            OsgiManifest mf = manifestReader.loadManifest(file);
 
-            boolean directoryShape = bundlesToExplode.contains(key.getId()) || manifestReader.isDirectoryShape(mf);
+            boolean directoryShape = bundlesToExplode.contains(key.getId()) || mf.isDirectoryShape();
 
             if (!file.isDirectory() && directoryShape) {
                 String filename = key.getId() + "_" + key.getVersion();
@@ -163,9 +163,9 @@ public class DefaultEquinoxInstallationFactory implements EquinoxInstallationFac
         List<String> bundleNames = new ArrayList<String>();
 
         for (File bundleFile : frameworkExtensions) {
-            Manifest mf = manifestReader.loadManifest(bundleFile);
-            ManifestElement[] id = manifestReader.parseHeader(Constants.BUNDLE_SYMBOLICNAME, mf);
-            ManifestElement[] version = manifestReader.parseHeader(Constants.BUNDLE_VERSION, mf);
+            OsgiManifest mf = manifestReader.loadManifest(bundleFile);
+            ManifestElement[] id = mf.getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
+            ManifestElement[] version = mf.getParsedHeader(Constants.BUNDLE_VERSION);
 
             if (id == null || version == null) {
                 throw new IOException("Invalid OSGi manifest in bundle " + bundleFile);
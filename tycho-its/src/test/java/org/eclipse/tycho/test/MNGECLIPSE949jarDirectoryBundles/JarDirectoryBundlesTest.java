@@ -18,7 +18,7 @@ import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 import org.apache.maven.it.Verifier;
-import org.eclipse.tycho.core.osgitools.DefaultBundleReader;
+import org.eclipse.tycho.core.osgitools.OsgiManifest;
 import org.eclipse.tycho.test.AbstractTychoIntegrationTest;
 import org.junit.Assert;
 import org.junit.Test;
@@ -48,9 +48,9 @@ public class JarDirectoryBundlesTest extends AbstractTychoIntegrationTest {
         } finally {
             jar.close();
         }
-        DefaultBundleReader reader = new DefaultBundleReader();
-        Assert.assertEquals("platform.jar", reader.parseHeader("Bundle-ClassPath", mf)[0].getValue());
-        Assert.assertEquals("org.eclipse.platform", reader.parseHeader("Bundle-SymbolicName", mf)[0].getValue());
+        OsgiManifest osgiManifest = new OsgiManifest(mf);
+        Assert.assertEquals("platform.jar", osgiManifest.getParsedHeader("Bundle-ClassPath")[0].getValue());
+        Assert.assertEquals("org.eclipse.platform", osgiManifest.getParsedHeader("Bundle-SymbolicName")[0].getValue());
 
         File[] productPlugins = new File(verifier.getBasedir(), "product/target/product/eclipse/plugins")
                 .listFiles(new FileFilter() {
@@ -67,8 +67,9 @@ public class JarDirectoryBundlesTest extends AbstractTychoIntegrationTest {
         } finally {
             is.close();
         }
-        Assert.assertEquals("platform.jar", reader.parseHeader("Bundle-ClassPath", mf)[0].getValue());
-        Assert.assertEquals("org.eclipse.platform", reader.parseHeader("Bundle-SymbolicName", mf)[0].getValue());
+        osgiManifest = new OsgiManifest(mf);
+        Assert.assertEquals("platform.jar", osgiManifest.getParsedHeader("Bundle-ClassPath")[0].getValue());
+        Assert.assertEquals("org.eclipse.platform", osgiManifest.getParsedHeader("Bundle-SymbolicName")[0].getValue());
 
     }
 
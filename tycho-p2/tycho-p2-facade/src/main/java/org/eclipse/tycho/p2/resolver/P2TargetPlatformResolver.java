@@ -102,6 +102,9 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
     @Requirement
     private ProjectDependenciesResolver projectDependenciesResolver;
 
+    @Requirement
+    private SharedResolutionContextCache sharedResolutionContexts;
+
     private P2ResolverFactory resolverFactory;
 
     private DependencyMetadataGenerator generator;
@@ -127,6 +130,16 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
         }
     }
 
+    private void warnRepositoryFailure(ArtifactRepository repository, Exception e) {
+        String msg = "Failed to access p2 repository " + repository.getId() + " (" + repository.getUrl()
+                + "), will try to use local cache. Reason: " + e.getMessage();
+        if (getLogger().isDebugEnabled()) {
+            getLogger().warn(msg, e);
+        } else {
+            getLogger().warn(msg);
+        }
+    }
+
     private static boolean isBundleProject(MavenProject project) {
         String type = project.getPackaging();
         return ArtifactKey.TYPE_ECLIPSE_PLUGIN.equals(type) || ArtifactKey.TYPE_ECLIPSE_TEST_PLUGIN.equals(type);
@@ -148,13 +161,13 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
 
         MavenLogger loggerForOsgiImpl = new MavenLoggerAdapter(getLogger(), DebugUtils.isDebugEnabled(session, project));
 
-        File localRepositoryRoot = new File(session.getLocalRepository().getBasedir());
-
         TargetPlatformConfiguration configuration = (TargetPlatformConfiguration) project
                 .getContextValue(TychoConstants.CTX_TARGET_PLATFORM_CONFIGURATION);
 
-        ResolutionContext resolutionContext = resolverFactory.createResolutionContext(localRepositoryRoot,
-                session.isOffline(), configuration.isDisableP2Mirrors(), loggerForOsgiImpl);
+        ResolutionContext sharedContext = getSharedResolutionContext(session, project, reactorProjects,
+                configuration);
+        ResolutionContext resolutionContext = resolverFactory.createResolutionContext(sharedContext,
+                loggerForOsgiImpl);
 
         P2Resolver osgiResolverImpl = resolverFactory.createResolver(loggerForOsgiImpl);
 
@@ -166,19 +179,68 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
         }
     }
 
-    protected TargetPlatform doResolvePlatform(final MavenSession session, final MavenProject project,
-            List<ReactorProject> reactorProjects, List<Dependency> dependencies, ResolutionContext resolutionContext,
-            P2Resolver resolver, TargetPlatformConfiguration configuration) {
+    /**
+     * Returns the resolution context with the content which is common to all projects with the
+     * same reactor, p2 repositories, and target definition. The context is only created once per
+     * session for each such combination. Since the context is used by several projects, its
+     * logging does not depend on the <code>tycho.debug.resolver</code> setting of a single project.
+     */
+    private ResolutionContext getSharedResolutionContext(final MavenSession session, final MavenProject project,
+            final List<ReactorProject> reactorProjects, final TargetPlatformConfiguration configuration) {
+        Object key = getSharedResolutionContextKey(session, project, reactorProjects, configuration);
+
+        return sharedResolutionContexts.getContext(session, key, new SharedResolutionContextCache.ContextFactory() {
+            public ResolutionContext createContext() {
+                File localRepositoryRoot = new File(session.getLocalRepository().getBasedir());
+                MavenLogger loggerForOsgiImpl = new MavenLoggerAdapter(getLogger(), false);
+
+                ResolutionContext resolutionContext = resolverFactory.createResolutionContext(localRepositoryRoot,
+                        session.isOffline(), configuration.isDisableP2Mirrors(), loggerForOsgiImpl);
+
+                setupSharedResolutionContext(session, project, reactorProjects, resolutionContext, configuration);
+                return resolutionContext;
+            }
+        });
+    }
 
-        Map<File, ReactorProject> projects = new HashMap<File, ReactorProject>();
+    /**
+     * Returns a key which identifies all inputs of
+     * {@link #setupSharedResolutionContext(MavenSession, MavenProject, List, ResolutionContext, TargetPlatformConfiguration)}
+     * .
+     */
+    private Object getSharedResolutionContextKey(MavenSession session, MavenProject project,
+            List<ReactorProject> reactorProjects, TargetPlatformConfiguration configuration) {
+        List<Object> key = new ArrayList<Object>();
+        key.add(session.getLocalRepository().getBasedir());
+        key.add(Boolean.valueOf(session.isOffline()));
+        key.add(Boolean.valueOf(configuration.isDisableP2Mirrors()));
 
-        resolver.setEnvironments(getEnvironments(configuration));
+        for (ReactorProject otherProject : reactorProjects) {
+            key.add(otherProject.getBasedir());
+        }
+
+        for (ArtifactRepository repository : project.getRemoteArtifactRepositories()) {
+            if (repository.getLayout() instanceof P2ArtifactRepositoryLayout) {
+                // the credentials are configured per server id in the settings, so they are
+                // identified by the repository id and need not be part of the key
+                key.add(repository.getId());
+                key.add(repository.getUrl());
+            }
+        }
+
+        key.add(configuration.getTarget());
+        key.add(getEnvironments(configuration));
+        return key;
+    }
+
+    protected void setupSharedResolutionContext(MavenSession session, MavenProject project,
+            List<ReactorProject> reactorProjects, ResolutionContext resolutionContext,
+            TargetPlatformConfiguration configuration) {
 
         for (ReactorProject otherProject : reactorProjects) {
             if (getLogger().isDebugEnabled()) {
                 getLogger().debug("P2resolver.addMavenProject " + otherProject.getId());
             }
-            projects.put(otherProject.getBasedir(), otherProject);
             resolutionContext.addReactorArtifact(new ReactorArtifactFacade(otherProject, null));
 
             Map<String, Set<Object>> dependencyMetadata = otherProject.getDependencyMetadata();
@@ -189,60 +251,8 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
             }
         }
 
-        if (dependencies != null) {
-            for (Dependency dependency : dependencies) {
-                resolver.addDependency(dependency.getType(), dependency.getArtifactId(), dependency.getVersion());
-            }
-        }
-
-        if (TargetPlatformConfiguration.POM_DEPENDENCIES_CONSIDER.equals(configuration.getPomDependencies())) {
-            Set<String> projectIds = new HashSet<String>();
-            for (ReactorProject p : reactorProjects) {
-                String key = ArtifactUtils.key(p.getGroupId(), p.getArtifactId(), p.getVersion());
-                projectIds.add(key);
-            }
-
-            ArrayList<String> scopes = new ArrayList<String>();
-            scopes.add(Artifact.SCOPE_COMPILE);
-            Collection<Artifact> artifacts;
-            try {
-                artifacts = projectDependenciesResolver.resolve(project, scopes, session);
-            } catch (MultipleArtifactsNotFoundException e) {
-                Collection<Artifact> missing = new HashSet<Artifact>(e.getMissingArtifacts());
-
-                for (Iterator<Artifact> it = missing.iterator(); it.hasNext();) {
-                    Artifact a = it.next();
-                    String key = ArtifactUtils.key(a.getGroupId(), a.getArtifactId(), a.getBaseVersion());
-                    if (projectIds.contains(key)) {
-                        it.remove();
-                    }
-                }
-
-                if (!missing.isEmpty()) {
-                    throw new RuntimeException("Could not resolve project dependencies", e);
-                }
-
-                artifacts = e.getResolvedArtifacts();
-                artifacts.removeAll(e.getMissingArtifacts());
-            } catch (AbstractArtifactResolutionException e) {
-                throw new RuntimeException("Could not resolve project dependencies", e);
-            }
-            List<Artifact> externalArtifacts = new ArrayList<Artifact>(artifacts.size());
-            for (Artifact artifact : artifacts) {
-                String key = ArtifactUtils.key(artifact.getGroupId(), artifact.getArtifactId(),
-                        artifact.getBaseVersion());
-                if (projectIds.contains(key)) {
-                    // resolved to an older snapshot from the repo, we only want the current project in the reactor
-                    continue;
-                }
-                externalArtifacts.add(artifact);
-            }
-            List<Artifact> explicitArtifacts = MavenDependencyInjector.filterInjectedDependencies(externalArtifacts); // needed when the resolution is done again for the test runtime
-            PomDependencyProcessor pomDependencyProcessor = new PomDependencyProcessor(session, repositorySystem,
-                    getLogger());
-            pomDependencyProcessor.addPomDependenciesToResolutionContext(project, explicitArtifacts, resolutionContext);
-        }
-
+        // the repositories may be loaded concurrently
+        Map<URI, ArtifactRepository> p2Repositories = new LinkedHashMap<URI, ArtifactRepository>();
         for (ArtifactRepository repository : project.getRemoteArtifactRepositories()) {
             try {
                 URI uri = new URL(repository.getUrl()).toURI();
@@ -260,18 +270,9 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
                             resolutionContext.setCredentials(uri, auth.getUsername(), auth.getPassword());
                         }
 
-                        resolutionContext.addP2Repository(uri);
-
-                        getLogger().debug(
-                                "Added p2 repository " + repository.getId() + " (" + repository.getUrl() + ")");
+                        p2Repositories.put(uri, repository);
                     } catch (Exception e) {
-                        String msg = "Failed to access p2 repository " + repository.getId() + " ("
-                                + repository.getUrl() + "), will try to use local cache. Reason: " + e.getMessage();
-                        if (getLogger().isDebugEnabled()) {
-                            getLogger().warn(msg, e);
-                        } else {
-                            getLogger().warn(msg);
-                        }
+                        warnRepositoryFailure(repository, e);
                     }
                 }
             } catch (MalformedURLException e) {
@@ -281,6 +282,18 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
             }
         }
 
+        Map<URI, Exception> failures = resolutionContext.addP2Repositories(new ArrayList<URI>(p2Repositories
+                .keySet()));
+        for (Map.Entry<URI, ArtifactRepository> entry : p2Repositories.entrySet()) {
+            ArtifactRepository repository = entry.getValue();
+            Exception e = failures.get(entry.getKey());
+            if (e == null) {
+                getLogger().debug("Added p2 repository " + repository.getId() + " (" + repository.getUrl() + ")");
+            } else {
+                warnRepositoryFailure(repository, e);
+            }
+        }
+
         if (configuration.getTarget() != null) {
             final TargetDefinitionFile target;
             try {
@@ -337,6 +350,73 @@ public class P2TargetPlatformResolver extends AbstractTargetPlatformResolver imp
                 }
             }
         }
+    }
+
+    protected TargetPlatform doResolvePlatform(final MavenSession session, final MavenProject project,
+            List<ReactorProject> reactorProjects, List<Dependency> dependencies, ResolutionContext resolutionContext,
+            P2Resolver resolver, TargetPlatformConfiguration configuration) {
+
+        Map<File, ReactorProject> projects = new HashMap<File, ReactorProject>();
+
+        resolver.setEnvironments(getEnvironments(configuration));
+
+        for (ReactorProject otherProject : reactorProjects) {
+            projects.put(otherProject.getBasedir(), otherProject);
+        }
+
+        if (dependencies != null) {
+            for (Dependency dependency : dependencies) {
+                resolver.addDependency(dependency.getType(), dependency.getArtifactId(), dependency.getVersion());
+            }
+        }
+
+        if (TargetPlatformConfiguration.POM_DEPENDENCIES_CONSIDER.equals(configuration.getPomDependencies())) {
+            Set<String> projectIds = new HashSet<String>();
+            for (ReactorProject p : reactorProjects) {
+                String key = ArtifactUtils.key(p.getGroupId(), p.getArtifactId(), p.getVersion());
+                projectIds.add(key);
+            }
+
+            ArrayList<String> scopes = new ArrayList<String>();
+            scopes.add(Artifact.SCOPE_COMPILE);
+            Collection<Artifact> artifacts;
+            try {
+                artifacts = projectDependenciesResolver.resolve(project, scopes, session);
+            } catch (MultipleArtifactsNotFoundException e) {
+                Collection<Artifact> missing = new HashSet<Artifact>(e.getMissingArtifacts());
+
+                for (Iterator<Artifact> it = missing.iterator(); it.hasNext();) {
+                    Artifact a = it.next();
+                    String key = ArtifactUtils.key(a.getGroupId(), a.getArtifactId(), a.getBaseVersion());
+                    if (projectIds.contains(key)) {
+                        it.remove();
+                    }
+                }
+
+                if (!missing.isEmpty()) {
+                    throw new RuntimeException("Could not resolve project dependencies", e);
+                }
+
+                artifacts = e.getResolvedArtifacts();
+                artifacts.removeAll(e.getMissingArtifacts());
+            } catch (AbstractArtifactResolutionException e) {
+                throw new RuntimeException("Could not resolve project dependencies", e);
+            }
+            List<Artifact> externalArtifacts = new ArrayList<Artifact>(artifacts.size());
+            for (Artifact artifact : artifacts) {
+                String key = ArtifactUtils.key(artifact.getGroupId(), artifact.getArtifactId(),
+                        artifact.getBaseVersion());
+                if (projectIds.contains(key)) {
+                    // resolved to an older snapshot from the repo, we only want the current project in the reactor
+                    continue;
+                }
+                externalArtifacts.add(artifact);
+            }
+            List<Artifact> explicitArtifacts = MavenDependencyInjector.filterInjectedDependencies(externalArtifacts); // needed when the resolution is done again for the test runtime
+            PomDependencyProcessor pomDependencyProcessor = new PomDependencyProcessor(session, repositorySystem,
+                    getLogger());
+            pomDependencyProcessor.addPomDependenciesToResolutionContext(project, explicitArtifacts, resolutionContext);
+        }
 
         if (!isAllowConflictingDependencies(project, configuration)) {
             List<P2ResolutionResult> results = resolver.resolveProject(resolutionContext, project.getBasedir());
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2008, 2011 Sonatype Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Sonatype Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tycho.p2.resolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.component.annotations.Component;
+import org.eclipse.tycho.p2.resolver.facade.ResolutionContext;
+
+/**
+ * Holds the resolution contexts which are shared by the projects of a reactor build. A shared
+ * context contains the reactor artifacts, the p2 repositories and the target definition content,
+ * so that these need to be set up only once per build and not once per project. Contexts are
+ * scoped to the Maven session and identified by a key which covers all inputs of the shared
+ * content.
+ */
+@Component(role = SharedResolutionContextCache.class)
+public class SharedResolutionContextCache {
+
+    public interface ContextFactory {
+        ResolutionContext createContext();
+    }
+
+    private static class Entry {
+        ResolutionContext context;
+    }
+
+    private final Map<MavenSession, Map<Object, Entry>> sessions = new WeakHashMap<MavenSession, Map<Object, Entry>>();
+
+    /**
+     * Returns the shared context for the given key, creating it with the given factory if needed.
+     * Concurrent callers with the same key wait for the context to be created only once.
+     */
+    public ResolutionContext getContext(MavenSession session, Object key, ContextFactory factory) {
+        Entry entry;
+        synchronized (sessions) {
+            Map<Object, Entry> entries = sessions.get(session);
+            if (entries == null) {
+                entries = new HashMap<Object, Entry>();
+                sessions.put(session, entries);
+            }
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+
+        synchronized (entry) {
+            if (entry.context == null) {
+                // if this fails, the next caller will try again
+                entry.context = factory.createContext();
+            }
+            return entry.context;
+        }
+    }
+}
@@ -27,7 +27,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.jar.Manifest;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Build;
@@ -54,6 +53,7 @@ import org.eclipse.tycho.core.osgitools.BundleReader;
 import org.eclipse.tycho.core.osgitools.DefaultArtifactKey;
 import org.eclipse.tycho.core.osgitools.DependencyComputer;
 import org.eclipse.tycho.core.osgitools.EquinoxResolver;
+import org.eclipse.tycho.core.osgitools.OsgiManifest;
 import org.eclipse.tycho.core.osgitools.targetplatform.DefaultTargetPlatform;
 import org.eclipse.tycho.model.Feature;
 import org.eclipse.tycho.model.FeatureRef;
@@ -204,10 +204,10 @@ public class GeneratePomsMojo extends AbstractMojo {
 
         for (File dir : candidateDirs) {
             if (isPluginProject(dir)) {
-                Manifest mf = bundleReader.loadManifest(dir);
+                OsgiManifest mf = bundleReader.loadManifest(dir);
                 if (mf != null) {
-                    ManifestElement[] id = bundleReader.parseHeader(Constants.BUNDLE_SYMBOLICNAME, mf);
-                    ManifestElement[] version = bundleReader.parseHeader(Constants.BUNDLE_VERSION, mf);
+                    ManifestElement[] id = mf.getParsedHeader(Constants.BUNDLE_SYMBOLICNAME);
+                    ManifestElement[] version = mf.getParsedHeader(Constants.BUNDLE_VERSION);
                     if (id != null && version != null) {
                         ArtifactKey key = new DefaultArtifactKey(org.eclipse.tycho.ArtifactKey.TYPE_ECLIPSE_PLUGIN,
                                 id[0].getValue(), version[0].getValue());